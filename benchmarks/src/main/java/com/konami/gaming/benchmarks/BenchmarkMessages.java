@@ -0,0 +1,32 @@
+package com.konami.gaming.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared message fixtures for the benchmarks.
+ */
+final class BenchmarkMessages {
+
+    // Held so the level sticks; keeps the code under test's logging out of the measurements
+    private static final Logger PROJECT_LOGGER = Logger.getLogger("com.konami.gaming");
+
+    private BenchmarkMessages() {}
+
+    static void quietLogging() {
+        PROJECT_LOGGER.setLevel(Level.WARNING);
+    }
+
+    /**
+     * Rows shaped like the GUI client's: short keys, medium values, some characters to escape.
+     */
+    static List<String[]> pairs(int rows) {
+        List<String[]> pairs = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            pairs.add(new String[]{"Key " + i, "Value <" + i + "> & some longer text for row " + i});
+        }
+        return pairs;
+    }
+}
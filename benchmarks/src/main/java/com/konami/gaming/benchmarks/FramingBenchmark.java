@@ -0,0 +1,77 @@
+package com.konami.gaming.benchmarks;
+
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.xml.XmlMessageBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The server's framing loop: fill from a stream and cut frames, as in
+ * {@code SocketListener.handleClient}, for a session of pipelined messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark {
+
+    private static final int MESSAGES = 100;
+
+    @Param({"1", "10", "100"})
+    public int rows;
+
+    @Param({"END_MARKER", "LENGTH_PREFIXED"})
+    public MessageFramer.Mode mode;
+
+    private byte[] session;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] message = XmlMessageBuilder.build("Print", BenchmarkMessages.pairs(rows), "42")
+                .getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (mode == MessageFramer.Mode.LENGTH_PREFIXED) {
+            out.write(NetworkConstants.LENGTH_PREFIX_MAGIC);
+        }
+        for (int i = 0; i < MESSAGES; i++) {
+            out.write(MessageFramer.encode(mode, message));
+        }
+        session = out.toByteArray();
+    }
+
+    /**
+     * @return total payload bytes framed, so the work cannot be eliminated
+     */
+    @Benchmark
+    public long frameSession() throws IOException {
+        InputStream in = new ByteArrayInputStream(session);
+        MessageFramer framer = new MessageFramer();
+        long payloadBytes = 0;
+        do {
+            while (framer.nextFrame()) {
+                payloadBytes += framer.frameLength();
+            }
+        } while (framer.fill(in) >= 0);
+        return payloadBytes;
+    }
+}
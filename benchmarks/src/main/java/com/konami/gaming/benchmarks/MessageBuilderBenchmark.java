@@ -0,0 +1,53 @@
+package com.konami.gaming.benchmarks;
+
+import com.konami.gaming.common.BinaryMessageBuilder;
+import com.konami.gaming.xml.XmlMessageBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side serialization, as done by {@code KeyValuePanel.toXml()} and the binary codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBuilderBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int rows;
+
+    private List<String[]> pairs;
+
+    @Setup
+    public void setup() {
+        pairs = BenchmarkMessages.pairs(rows);
+    }
+
+    /** String building plus the UTF-8 encoding done before the bytes hit the socket. */
+    @Benchmark
+    public byte[] buildXml() {
+        return XmlMessageBuilder.build("Print", pairs, "42").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] buildBinary() {
+        return BinaryMessageBuilder.build("Print", pairs, "42");
+    }
+}
@@ -0,0 +1,109 @@
+package com.konami.gaming.benchmarks;
+
+import com.konami.gaming.xml.XmlProcessor;
+
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the same messages through both XML parsers and reports any difference
+ * in command, message ID or pairs. Exits with status 1 on a mismatch, so it
+ * can gate a parser change before the benchmarks are compared.
+ * <pre>
+ *   java -cp target/benchmarks.jar com.konami.gaming.benchmarks.ParserEquivalenceCheck
+ * </pre>
+ */
+public final class ParserEquivalenceCheck {
+
+    // Held so the level sticks; the malformed cases would otherwise log a stack trace per parser
+    private static final Logger PROJECT_LOGGER = Logger.getLogger("com.konami.gaming");
+
+    private static final String[] CASES = {
+            "<Message id=' 7 '><Command>Print</Command><Data><Row><Description>\"N\"</Description><Value>\"a\"</Value></Row></Data></Message>",
+            // Row nested in a Row
+            "<Message><Data><Row><Description>o</Description><Row><Description>i</Description><Value>iv</Value></Row><Value>ov</Value></Row></Data></Message>",
+            "<Message><Data><Row><Row><Description>i</Description><Value>iv</Value></Row></Row></Data></Message>",
+            // Text mixed with CDATA, comments, processing instructions and child elements
+            "<Message><Data><Row><Description>a<![CDATA[b]]>c</Description><Value><![CDATA[x]]>y</Value></Row></Data></Message>",
+            "<Message><Data><Row><Description><![CDATA[a]]><![CDATA[b]]></Description><Value>v</Value></Row></Data></Message>",
+            "<Message><Data><Row><Description><!--c-->a</Description><Value><b>x</b>y<!--z--><![CDATA[w]]></Value></Row></Data></Message>",
+            "<Message><Data><Row><Description>x<!--c-->y</Description><Value>v</Value></Row></Data></Message>",
+            "<Message><Data><Row><Description><?pi x?>a</Description><Value/></Row></Data></Message>",
+            "<Message><Command>  <b>P</b></Command></Message>",
+            "<Message><Command><b>P</b>q</Command></Message>",
+            "<Message><Command>a&amp;b&#65;c</Command><Data><Row><Description>x&lt;y</Description><Value>1&gt;2</Value></Row></Data></Message>",
+            "<Message><Data><Row><Description>a<Description>b</Description></Description><Value>v</Value></Row></Data></Message>",
+            // Elements outside the Message, incomplete rows, empty elements
+            "<Root><Row><Description>d</Description><Value>v</Value></Row><Message id='2'><Command>C</Command></Message></Root>",
+            "<Root><Command>Out</Command><Message><Command>In</Command></Message></Root>",
+            "<Message><Data><Row><Value>v</Value></Row><Row><Description>d</Description></Row></Data></Message>",
+            "<Message><Command></Command><Data><Row><Description></Description><Value/></Row></Data></Message>",
+            "<ns:Message xmlns:ns='u'><ns:Command>X</ns:Command></ns:Message>",
+            // Malformed or refused input
+            "<Message><Data><Row><Description>broken</Description>",
+            "<!DOCTYPE x><Message/>",
+    };
+
+    private static final String[] TAGS = {"Message", "Command", "Data", "Row", "Description", "Value", "b"};
+
+    private ParserEquivalenceCheck() {}
+
+    public static void main(String[] args) {
+        PROJECT_LOGGER.setLevel(Level.OFF);
+        int randomCases = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int mismatches = 0;
+        for (String xml : CASES) {
+            mismatches += check(xml);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < randomCases; i++) {
+            StringBuilder xml = new StringBuilder("<Message id='" + random.nextInt(3) + "'>");
+            randomContent(xml, random, 0);
+            mismatches += check(xml.append("</Message>").toString());
+        }
+        System.out.printf("%d messages, %d mismatches%n", CASES.length + randomCases, mismatches);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    private static int check(String xml) {
+        String dom = describe(xml, XmlProcessor.Parser.DOM);
+        String stax = describe(xml, XmlProcessor.Parser.STAX);
+        if (dom.equals(stax)) {
+            return 0;
+        }
+        System.out.println("Mismatch for " + xml + "\n  DOM:  " + dom + "\n  STAX: " + stax);
+        return 1;
+    }
+
+    private static String describe(String xml, XmlProcessor.Parser parser) {
+        XmlProcessor processor = new XmlProcessor(xml, parser);
+        processor.process();
+        StringBuilder result = new StringBuilder("command=[" + processor.getCommand()
+                + "] id=[" + processor.getMessageId() + "]");
+        for (String[] pair : processor.getKeyValuePairs()) {
+            result.append(" {").append(pair[0]).append('=').append(pair[1]).append('}');
+        }
+        return result.toString();
+    }
+
+    private static void randomContent(StringBuilder xml, Random random, int depth) {
+        int parts = random.nextInt(4);
+        for (int i = 0; i < parts; i++) {
+            switch (random.nextInt(7)) {
+                case 0: xml.append('t').append(random.nextInt(9)); break;
+                case 1: xml.append("<![CDATA[c").append(random.nextInt(9)).append("]]>"); break;
+                case 2: xml.append("<!--m").append(random.nextInt(9)).append("-->"); break;
+                case 3: xml.append("<?p q?>"); break;
+                case 4: xml.append(" &amp; "); break;
+                default:
+                    if (depth < 5) {
+                        String tag = TAGS[random.nextInt(TAGS.length)];
+                        xml.append('<').append(tag).append('>');
+                        randomContent(xml, random, depth + 1);
+                        xml.append("</").append(tag).append('>');
+                    }
+            }
+        }
+    }
+}
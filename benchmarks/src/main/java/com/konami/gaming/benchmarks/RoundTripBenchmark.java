@@ -0,0 +1,110 @@
+package com.konami.gaming.benchmarks;
+
+import com.konami.gaming.client.ClientConnection;
+import com.konami.gaming.client.ContentType;
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.server.MessageSink;
+import com.konami.gaming.server.ServerConfig;
+import com.konami.gaming.server.ServerEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback client to server round trip on a keep-alive connection, for each
+ * engine and wire format. The server uses a no-op sink.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"BLOCKING", "NIO"})
+        public ServerConfig.Engine engine;
+
+        int port;
+        private ServerEngine serverEngine;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            BenchmarkMessages.quietLogging();
+            try (ServerSocket probe = new ServerSocket(0)) {
+                port = probe.getLocalPort();
+            }
+            ServerConfig config = ServerConfig.fromSystemProperties();
+            config.setPort(port);
+            config.setEngine(engine);
+            MessageSink sink = (messageId, command, keyValuePairs) -> { };
+            serverEngine = ServerEngine.create(sink, config);
+            new Thread(serverEngine, "Benchmark-Server").start();
+            awaitListening(port);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            serverEngine.close();
+        }
+
+        private static void awaitListening(int port) throws InterruptedException {
+            for (int attempt = 0; attempt < 100; attempt++) {
+                try {
+                    new Socket("localhost", port).close();
+                    return;
+                } catch (IOException e) {
+                    Thread.sleep(50);
+                }
+            }
+            throw new IllegalStateException("Server did not start on port " + port);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        @Param({"10"})
+        public int rows;
+
+        @Param({"XML", "BINARY"})
+        public ContentType contentType;
+
+        private ClientConnection connection;
+        private byte[] payload;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) {
+            MessageFramer.Mode framing = contentType == ContentType.BINARY
+                    ? MessageFramer.Mode.LENGTH_PREFIXED : MessageFramer.Mode.END_MARKER;
+            connection = new ClientConnection("localhost", server.port, framing);
+            payload = contentType.encode("Print", BenchmarkMessages.pairs(rows), "42");
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public String roundTrip(Client client) throws IOException {
+        return client.connection.send(client.payload);
+    }
+}
@@ -0,0 +1,66 @@
+package com.konami.gaming.benchmarks;
+
+import com.konami.gaming.common.BinaryMessageBuilder;
+import com.konami.gaming.common.BinaryMessageProcessor;
+import com.konami.gaming.xml.XmlMessageBuilder;
+import com.konami.gaming.xml.XmlProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a received payload: both XML parsers and the binary codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlProcessorBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int rows;
+
+    @Param({"STAX", "DOM"})
+    public XmlProcessor.Parser parser;
+
+    private byte[] xml;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        BenchmarkMessages.quietLogging();
+        List<String[]> pairs = BenchmarkMessages.pairs(rows);
+        xml = XmlMessageBuilder.build("Print", pairs, "42").getBytes(StandardCharsets.UTF_8);
+        binary = BinaryMessageBuilder.build("Print", pairs, "42");
+    }
+
+    @Benchmark
+    public List<String[]> processXml() {
+        XmlProcessor processor = new XmlProcessor(xml, 0, xml.length, parser);
+        processor.process();
+        return processor.getKeyValuePairs();
+    }
+
+    /** Parser-independent; reported once per parser value for side-by-side reading. */
+    @Benchmark
+    public List<String[]> processBinary() {
+        BinaryMessageProcessor processor = new BinaryMessageProcessor(binary, 0, binary.length);
+        processor.process();
+        return processor.getKeyValuePairs();
+    }
+}
@@ -0,0 +1,208 @@
+package com.konami.gaming.client;
+
+import com.konami.gaming.common.BinaryMessageBuilder;
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+/**
+ * Persistent client session to one server. Connects lazily, then sends any
+ * number of messages on the same socket, framed with END markers or (when
+ * selected) length prefixes. If a reused socket turns out to have been closed
+ * by the server (e.g. idle timeout), the message is retried once on a fresh
+ * connection.
+ */
+public class ClientConnection implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ClientConnection.class.getName());
+
+    /** Framing used by connections created without an explicit mode: END_MARKER or LENGTH_PREFIXED. */
+    public static final String PROP_FRAMING = "konami.client.framing";
+
+    private final String serverIp;
+    private final int serverPort;
+    private final MessageFramer.Mode framing;
+    private Socket connectionSocket;
+    private OutputStream output;
+    private InputStream input;
+    private MessageFramer replyFramer;
+    private long lastUsed = System.nanoTime();
+
+    public ClientConnection(String serverIp, int serverPort) {
+        this(serverIp, serverPort, defaultFraming());
+    }
+
+    /**
+     * @param framing END_MARKER for the line protocol, LENGTH_PREFIXED to
+     *                negotiate length-prefixed frames with the server
+     */
+    public ClientConnection(String serverIp, int serverPort, MessageFramer.Mode framing) {
+        this.serverIp = serverIp;
+        this.serverPort = serverPort;
+        this.framing = framing == MessageFramer.Mode.LENGTH_PREFIXED
+                ? MessageFramer.Mode.LENGTH_PREFIXED : MessageFramer.Mode.END_MARKER;
+    }
+
+    /**
+     * Framing selected by the {@value #PROP_FRAMING} system property. Defaults
+     * to END_MARKER, or LENGTH_PREFIXED when the default content type is binary.
+     */
+    public static MessageFramer.Mode defaultFraming() {
+        MessageFramer.Mode fallback = ContentType.fromSystemProperties() == ContentType.BINARY
+                ? MessageFramer.Mode.LENGTH_PREFIXED : MessageFramer.Mode.END_MARKER;
+        return MessageFramer.Mode.valueOf(System.getProperty(PROP_FRAMING, fallback.name()).trim().toUpperCase());
+    }
+
+    /**
+     * Send one message and wait for the server's reply.
+     * @param message The message body (without framing)
+     * @return the reply lines, trimmed
+     * @throws ServerBusyException if the server turned the connection away
+     * @throws IOException if the exchange fails
+     */
+    public String send(String message) throws IOException {
+        return send(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send one encoded message (XML or binary, see {@link ContentType}) and wait for the reply.
+     * @throws IOException if the exchange fails, or a binary message would be END-framed
+     */
+    public synchronized String send(byte[] message) throws IOException {
+        if (framing == MessageFramer.Mode.END_MARKER && BinaryMessageBuilder.isBinary(message, 0, message.length)) {
+            throw new IOException("Binary messages require length-prefixed framing");
+        }
+        boolean reused = isConnected();
+        if (!reused) {
+            connect();
+        }
+        try {
+            return exchange(message);
+        } catch (SocketTimeoutException e) {
+            closeSocket();
+            throw e;
+        } catch (IOException e) {
+            closeSocket();
+            if (!reused) {
+                throw e;
+            }
+            LOGGER.fine("Pooled session was closed by server, reconnecting");
+            connect();
+            try {
+                return exchange(message);
+            } catch (IOException retryError) {
+                closeSocket();
+                throw retryError;
+            }
+        }
+    }
+
+    /**
+     * Check that an idle connection is still fit for reuse: connected, not idle
+     * for longer than the given age, and with no unexpected bytes (such as a
+     * late reply or error) waiting to be read.
+     */
+    public synchronized boolean isReusable(long maxIdleNanos) {
+        if (!isConnected() || connectionSocket.isInputShutdown() || connectionSocket.isOutputShutdown()) {
+            return false;
+        }
+        if (System.nanoTime() - lastUsed > maxIdleNanos) {
+            return false;
+        }
+        try {
+            return input.available() == 0 && !replyFramer.hasPartialFrame();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public String getServerIp() {
+        return serverIp;
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public MessageFramer.Mode getFraming() {
+        return framing;
+    }
+
+    public boolean isFor(String ip, int port) {
+        return serverIp.equals(ip) && serverPort == port;
+    }
+
+    public synchronized boolean isConnected() {
+        return connectionSocket != null && connectionSocket.isConnected() && !connectionSocket.isClosed();
+    }
+
+    @Override
+    public synchronized void close() {
+        closeSocket();
+    }
+
+    private void connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(serverIp, serverPort), NetworkConstants.CONNECTION_TIMEOUT);
+            socket.setSoTimeout(NetworkConstants.SOCKET_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            output = new BufferedOutputStream(socket.getOutputStream());
+            input = socket.getInputStream();
+            if (framing == MessageFramer.Mode.LENGTH_PREFIXED) {
+                output.write(NetworkConstants.LENGTH_PREFIX_MAGIC); // goes out with the first message
+            }
+            // Replies are read in whatever framing the server answers with
+            replyFramer = new MessageFramer();
+            connectionSocket = socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private String exchange(byte[] message) throws IOException {
+        output.write(MessageFramer.encode(framing, message));
+        output.flush();
+        LOGGER.fine("Message sent to server");
+
+        while (!replyFramer.nextFrame()) {
+            if (replyFramer.fill(input) < 0) {
+                throw new EOFException("Server closed connection before end of reply");
+            }
+        }
+        lastUsed = System.nanoTime();
+        String reply = replyFramer.frameText().trim();
+        if (reply.equals(NetworkConstants.BUSY_MESSAGE)) {
+            throw new ServerBusyException();
+        }
+        return reply;
+    }
+
+    private void closeSocket() {
+        try {
+            if (connectionSocket != null && !connectionSocket.isClosed()) {
+                connectionSocket.close();
+                LOGGER.fine("Connection closed");
+            }
+        } catch (IOException e) {
+            LOGGER.fine("Error closing connection: " + e.getMessage());
+        } finally {
+            connectionSocket = null;
+            output = null;
+            input = null;
+            replyFramer = null;
+        }
+    }
+}
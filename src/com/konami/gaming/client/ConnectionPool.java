@@ -0,0 +1,142 @@
+package com.konami.gaming.client;
+
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Pool of warm keep-alive {@link ClientConnection}s per (ip, port).
+ * Idle connections are validated before reuse; stale or broken ones are
+ * evicted. Each route is capped, and callers wait up to SOCKET_TIMEOUT
+ * for a connection to be returned once the cap is reached.
+ */
+public class ConnectionPool implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final ConnectionPool SHARED = new ConnectionPool(
+            NetworkConstants.POOL_MAX_CONNECTIONS_PER_ROUTE, NetworkConstants.POOL_MAX_IDLE_TIME);
+
+    private final int maxPerRoute;
+    private final long maxIdleNanos;
+    private final MessageFramer.Mode framing;
+    private final Map<String, Route> routes = new HashMap<>();
+    private boolean closed = false;
+
+    /**
+     * @param maxPerRoute Maximum open connections (idle + in use) per server
+     * @param maxIdleMillis Idle connections older than this are closed instead of reused
+     */
+    public ConnectionPool(int maxPerRoute, long maxIdleMillis) {
+        this(maxPerRoute, maxIdleMillis, ClientConnection.defaultFraming());
+    }
+
+    /**
+     * @param framing Framing for new connections; LENGTH_PREFIXED is needed to send binary messages
+     */
+    public ConnectionPool(int maxPerRoute, long maxIdleMillis, MessageFramer.Mode framing) {
+        this.maxPerRoute = Math.max(1, maxPerRoute);
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+        this.framing = framing;
+    }
+
+    /**
+     * Process-wide pool used by the GUI and headless senders.
+     */
+    public static ConnectionPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Borrow a connection to the server. The caller must hand it back with
+     * {@link #release(ClientConnection)}.
+     * @throws IOException if the pool is closed or the route stays exhausted
+     */
+    public synchronized ClientConnection acquire(String serverIp, int serverPort) throws IOException {
+        String key = serverIp + ":" + serverPort;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NetworkConstants.SOCKET_TIMEOUT);
+
+        while (true) {
+            if (closed) {
+                throw new IOException("Connection pool is closed");
+            }
+            Route route = routes.computeIfAbsent(key, k -> new Route());
+            ClientConnection connection;
+            while ((connection = route.idle.pollFirst()) != null) {
+                if (connection.isReusable(maxIdleNanos)) {
+                    route.leased++;
+                    return connection;
+                }
+                connection.close();
+            }
+            if (route.leased < maxPerRoute) {
+                route.leased++;
+                return new ClientConnection(serverIp, serverPort, framing);
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IOException("Connection pool exhausted for " + key);
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for a pooled connection", e);
+            }
+        }
+    }
+
+    /**
+     * Return a borrowed connection. Broken connections are closed rather than pooled.
+     */
+    public synchronized void release(ClientConnection connection) {
+        Route route = routes.get(connection.getServerIp() + ":" + connection.getServerPort());
+        if (route != null) {
+            route.leased--;
+        }
+        if (closed || route == null || !connection.isConnected()) {
+            connection.close();
+        } else {
+            // Most recently used first, so the tail holds the stalest connections
+            route.idle.addFirst(connection);
+            evictStale(route);
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Route route : routes.values()) {
+            ClientConnection connection;
+            while ((connection = route.idle.pollFirst()) != null) {
+                connection.close();
+            }
+        }
+        routes.clear();
+        notifyAll();
+        LOGGER.info("Connection pool closed");
+    }
+
+    private void evictStale(Route route) {
+        ClientConnection oldest;
+        while ((oldest = route.idle.peekLast()) != null && !oldest.isReusable(maxIdleNanos)) {
+            route.idle.pollLast();
+            oldest.close();
+        }
+    }
+
+    private static final class Route {
+        private final Deque<ClientConnection> idle = new ArrayDeque<>();
+        private int leased;
+    }
+}
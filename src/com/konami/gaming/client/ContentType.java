@@ -0,0 +1,40 @@
+package com.konami.gaming.client;
+
+import com.konami.gaming.common.BinaryMessageBuilder;
+import com.konami.gaming.xml.XmlMessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Message body encodings understood by the server. The server tells them
+ * apart by the first payload byte, so both can be mixed on one connection.
+ */
+public enum ContentType {
+    /** The original XML format. */
+    XML,
+    /** Compact varint/UTF-8 format; needs length-prefixed framing. */
+    BINARY;
+
+    /** Encoding used by senders that do not choose one explicitly: XML or BINARY. */
+    public static final String PROP_CONTENT_TYPE = "konami.client.contentType";
+
+    /**
+     * Content type selected by the {@value #PROP_CONTENT_TYPE} system property; XML by default.
+     */
+    public static ContentType fromSystemProperties() {
+        return valueOf(System.getProperty(PROP_CONTENT_TYPE, XML.name()).trim().toUpperCase());
+    }
+
+    /**
+     * @param command The command text
+     * @param keyValuePairs Ordered {key, value} pairs
+     * @param messageId Optional correlation ID; null or empty to omit
+     */
+    public byte[] encode(String command, List<String[]> keyValuePairs, String messageId) {
+        if (this == BINARY) {
+            return BinaryMessageBuilder.build(command, keyValuePairs, messageId);
+        }
+        return XmlMessageBuilder.build(command, keyValuePairs, messageId).getBytes(StandardCharsets.UTF_8);
+    }
+}
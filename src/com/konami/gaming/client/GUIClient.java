@@ -9,6 +9,12 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * JavaFX GUI Client - same look and feel as server window.
  */
@@ -20,7 +26,11 @@ public class GUIClient implements MessageClient {
     private final TextField portTextField;
     private final KeyValuePanel keyValuePanel;
     private final TextArea responseTextArea;
-    private volatile boolean isSending = false;
+    private final ExecutorService sendExecutor;
+    private final AtomicLong nextMessageId = new AtomicLong(1);
+    private final ContentType contentType = ContentType.fromSystemProperties();
+    private PipelinedConnection connection; // only touched on the send thread
+    private int inFlightCount = 0;
 
     private static final String TOOLBAR_STYLE =
         "-fx-background-color: linear-gradient(to bottom, #1e293b, #0f172a); " +
@@ -99,25 +109,46 @@ public class GUIClient implements MessageClient {
 
         stage.setScene(new javafx.scene.Scene(root));
         stage.setOnCloseRequest(ev -> System.exit(0));
+
+        sendExecutor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "Client-Send-Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void show() {
         stage.show();
     }
 
+    /**
+     * Send without waiting for earlier replies; each request carries its own
+     * message ID and is matched to its reply in onRequestComplete.
+     */
     private void handleSend() {
-        if (isSending) return;
         if (!validateInput()) return;
 
         String ipAddress = ipTextField.getText().trim();
         int portNumber = Integer.parseInt(portTextField.getText().trim());
-        String xmlMessage = keyValuePanel.toXml();
-
-        setSendingState(true);
-        responseTextArea.appendText("\n[" + java.time.LocalTime.now() + "] Connecting...\n");
-
-        ServerConnector connector = new ServerConnector(ipAddress, portNumber, xmlMessage, this);
-        new Thread(connector, "Client-Send-Thread").start();
+        String messageId = String.valueOf(nextMessageId.getAndIncrement());
+        byte[] payload = keyValuePanel.toPayload(messageId, contentType);
+
+        setInFlightCount(inFlightCount + 1);
+        responseTextArea.appendText("\n[" + java.time.LocalTime.now() + "] Sending #" + messageId + "...\n");
+
+        // One pipelined connection per target; writes stay ordered on the send thread
+        sendExecutor.execute(() -> {
+            try {
+                if (connection == null || !connection.isFor(ipAddress, portNumber)) {
+                    if (connection != null) connection.close();
+                    connection = new PipelinedConnection(ipAddress, portNumber);
+                }
+                connection.send(messageId, payload, this);
+            } catch (IOException e) {
+                String msg = e instanceof ConnectException ? "Connection refused. Is the server running?" : e.getMessage();
+                onRequestComplete(messageId, msg, false);
+            }
+        });
     }
 
     private boolean validateInput() {
@@ -148,7 +179,17 @@ public class GUIClient implements MessageClient {
 
     @Override
     public void onSendComplete() {
-        Platform.runLater(() -> setSendingState(false));
+        Platform.runLater(() -> setInFlightCount(0));
+    }
+
+    @Override
+    public void onRequestComplete(String messageId, String response, boolean success) {
+        Platform.runLater(() -> {
+            setInFlightCount(inFlightCount - 1);
+            if (!success) {
+                responseTextArea.appendText("\n[" + java.time.LocalTime.now() + "] #" + messageId + " Error: " + response);
+            }
+        });
     }
 
     @Override
@@ -158,10 +199,9 @@ public class GUIClient implements MessageClient {
         });
     }
 
-    private void setSendingState(boolean sending) {
-        isSending = sending;
-        sendButton.setDisable(sending);
-        sendButton.setText(sending ? "Sending..." : "📤 Send");
+    private void setInFlightCount(int count) {
+        inFlightCount = Math.max(0, count);
+        sendButton.setText(inFlightCount > 0 ? "📤 Send (" + inFlightCount + " in flight)" : "📤 Send");
     }
 
     private void showError(String message) {
@@ -1,5 +1,7 @@
 package com.konami.gaming.client;
 
+import com.konami.gaming.xml.XmlMessageBuilder;
+
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -87,25 +89,30 @@ public class KeyValuePanel extends VBox {
     }
 
     public String toXml() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("<?xml version='1.0' encoding='UTF-8'?>\n");
-        sb.append("<Message>\n");
-        sb.append("  <Command>").append(escapeXml(getCommand())).append("</Command>\n");
-        sb.append("  <Data>\n");
-        for (KeyValue kv : getKeyValues()) {
-            sb.append("     <Row>\n");
-            sb.append("       <Description>\"").append(escapeXml(kv.key)).append("\"</Description>\n");
-            sb.append("       <Value>\"").append(escapeXml(kv.value)).append("\"</Value>\n");
-            sb.append("     </Row>\n");
-        }
-        sb.append("  </Data>\n");
-        sb.append("</Message>");
-        return sb.toString();
+        return toXml(null);
+    }
+
+    /**
+     * @param messageId Optional correlation ID echoed back by the server
+     */
+    public String toXml(String messageId) {
+        return XmlMessageBuilder.build(getCommand(), getPairs(), messageId);
     }
 
-    private static String escapeXml(String s) {
-        if (s == null) return "";
-        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    /**
+     * Encode the panel contents in the given content type.
+     * @param messageId Optional correlation ID echoed back by the server
+     */
+    public byte[] toPayload(String messageId, ContentType contentType) {
+        return contentType.encode(getCommand(), getPairs(), messageId);
+    }
+
+    private List<String[]> getPairs() {
+        List<String[]> pairs = new ArrayList<>();
+        for (KeyValue kv : getKeyValues()) {
+            pairs.add(new String[]{kv.key, kv.value});
+        }
+        return pairs;
     }
 
     public static class KeyValue {
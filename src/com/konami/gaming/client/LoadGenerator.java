@@ -0,0 +1,225 @@
+package com.konami.gaming.client;
+
+import com.konami.gaming.common.LatencyHistogram;
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.logging.AsyncLogHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Command-line load generator. Worker threads send messages through
+ * {@link ServerConnector} over a shared {@link ConnectionPool}, and the tool
+ * reports throughput and latency percentiles when done.
+ *
+ * <pre>
+ *   java -cp target/classes com.konami.gaming.client.LoadGenerator \
+ *       --host=localhost --port=8080 --concurrency=8 --rate=5000 --rows=10 --duration=30
+ * </pre>
+ * With a target rate, each request has a scheduled start time and its latency
+ * is measured from that time, so a stalled server shows up in the percentiles
+ * instead of just slowing the senders down (coordinated omission).
+ * With --pipeline=N each worker instead keeps up to N requests in flight on
+ * its own {@link PipelinedConnection}.
+ */
+public class LoadGenerator {
+
+    // Held so the level sticks; per-message INFO logging would dominate the measurement
+    private static final Logger CLIENT_LOGGER = Logger.getLogger("com.konami.gaming");
+
+    private final String host;
+    private final int port;
+    private final int concurrency;
+    private final int rate;
+    private final int rows;
+    private final int pipeline;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final ContentType contentType;
+    private final MessageFramer.Mode framing;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong busyCount = new AtomicLong();
+    private final AtomicLong nextMessageId = new AtomicLong(1);
+
+    public LoadGenerator(Map<String, String> options) {
+        this.host = options.getOrDefault("host", "localhost");
+        this.port = Integer.parseInt(options.getOrDefault("port", String.valueOf(NetworkConstants.DEFAULT_PORT)));
+        this.concurrency = Math.max(1, Integer.parseInt(options.getOrDefault("concurrency", "4")));
+        this.rate = Math.max(0, Integer.parseInt(options.getOrDefault("rate", "0")));
+        this.rows = Math.max(0, Integer.parseInt(options.getOrDefault("rows", "5")));
+        this.pipeline = Math.max(0, Integer.parseInt(options.getOrDefault("pipeline", "0")));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "10")));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "2")));
+        this.contentType = ContentType.valueOf(
+                options.getOrDefault("content-type", ContentType.fromSystemProperties().name()).toUpperCase(Locale.ROOT));
+        this.framing = contentType == ContentType.BINARY ? MessageFramer.Mode.LENGTH_PREFIXED
+                : MessageFramer.Mode.valueOf(options.getOrDefault("framing",
+                        ClientConnection.defaultFraming().name()).toUpperCase(Locale.ROOT));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--help") || !arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Usage: LoadGenerator [--host=localhost] [--port=8080] [--concurrency=4]"
+                        + " [--rate=0 (msgs/s, 0 = unthrottled)] [--rows=5] [--duration=10] [--warmup=2]"
+                        + " [--content-type=xml|binary] [--framing=end_marker|length_prefixed]"
+                        + " [--pipeline=0 (requests in flight per worker, 0 = one at a time)]");
+                System.exit(arg.equals("--help") ? 0 : 1);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        AsyncLogHandler.installIfEnabled();
+        CLIENT_LOGGER.setLevel(Level.WARNING);
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    public void run() throws InterruptedException {
+        List<String[]> pairs = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            pairs.add(new String[]{"Key" + i, "Value number " + i});
+        }
+
+        System.out.printf("Load: %s:%d, concurrency=%d, pipeline=%d, rate=%s, rows=%d, %s over %s,"
+                        + " warmup=%ds, duration=%ds%n", host, port, concurrency, pipeline, rate == 0 ? "max" : rate + "/s", rows, contentType, framing,
+                TimeUnit.NANOSECONDS.toSeconds(warmupNanos), TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+
+        try (ConnectionPool pool = new ConnectionPool(concurrency, NetworkConstants.POOL_MAX_IDLE_TIME, framing)) {
+            long start = System.nanoTime();
+            long measureFrom = start + warmupNanos;
+            long end = measureFrom + durationNanos;
+            // Each worker owns every concurrency-th slot of the overall schedule
+            long intervalNanos = rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) * concurrency / rate;
+            CountDownLatch done = new CountDownLatch(concurrency);
+
+            for (int w = 0; w < concurrency; w++) {
+                long firstSlot = start + (rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) * w / rate);
+                Thread worker = new Thread(() -> {
+                    try {
+                        runWorker(pool, pairs, firstSlot, intervalNanos, measureFrom, end);
+                    } finally {
+                        done.countDown();
+                    }
+                }, "Load-Worker-" + w);
+                worker.setDaemon(true);
+                worker.start();
+            }
+            done.await();
+            report(System.nanoTime() - measureFrom);
+        }
+    }
+
+    private void runWorker(ConnectionPool pool, List<String[]> pairs, long firstSlot, long intervalNanos,
+                           long measureFrom, long end) {
+        PipelinedConnection pipelined = pipeline > 0 ? new PipelinedConnection(host, port, framing) : null;
+        Semaphore window = pipelined != null ? new Semaphore(pipeline) : null;
+        try {
+            sendUntil(pool, pipelined, window, pairs, firstSlot, intervalNanos, measureFrom, end);
+        } finally {
+            if (pipelined != null) {
+                // Let the replies still in flight arrive before closing
+                try {
+                    window.tryAcquire(pipeline, NetworkConstants.SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pipelined.close();
+            }
+        }
+    }
+
+    private void sendUntil(ConnectionPool pool, PipelinedConnection pipelined, Semaphore window,
+                           List<String[]> pairs, long firstSlot, long intervalNanos, long measureFrom, long end) {
+        long scheduled = firstSlot;
+        while (true) {
+            long now = System.nanoTime();
+            if (intervalNanos > 0) {
+                if (scheduled - now > 0) {
+                    LockSupport.parkNanos(scheduled - now);
+                }
+            } else {
+                scheduled = now;
+            }
+            if (scheduled - end >= 0) {
+                return;
+            }
+            String messageId = String.valueOf(nextMessageId.getAndIncrement());
+            byte[] payload = contentType.encode("Print", pairs, messageId);
+            boolean measured = scheduled - measureFrom >= 0;
+            MessageClient callback = resultCallback(measured, scheduled, window);
+            if (pipelined == null) {
+                new ServerConnector(pool, host, port, payload, callback).run();
+            } else {
+                window.acquireUninterruptibly();
+                try {
+                    pipelined.send(messageId, payload, callback);
+                } catch (IOException e) {
+                    // A request that could not be written gets no callback from the connection
+                    callback.onRequestComplete(messageId, e.getMessage(), false);
+                }
+            }
+            scheduled += intervalNanos;
+        }
+    }
+
+    private MessageClient resultCallback(boolean measured, long intendedStart, Semaphore window) {
+        return new MessageClient() {
+            @Override
+            public void appendResponse(String response) {
+            }
+
+            @Override
+            public void onSendComplete() {
+            }
+
+            @Override
+            public void onRequestComplete(String id, String response, boolean success) {
+                if (window != null) {
+                    window.release();
+                }
+                if (!measured) {
+                    return;
+                }
+                if (success && response.equals(NetworkConstants.CONFIRMATION_MESSAGE)) {
+                    successCount.incrementAndGet();
+                    latency.record(System.nanoTime() - intendedStart);
+                } else if (NetworkConstants.BUSY_MESSAGE.equals(response)) {
+                    busyCount.incrementAndGet();
+                } else {
+                    errorCount.incrementAndGet();
+                }
+            }
+        };
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Sent %d ok, %d busy, %d errors in %.1fs: %.0f msgs/s%n",
+                successCount.get(), busyCount.get(), errorCount.get(), seconds, successCount.get() / seconds);
+        System.out.printf("Latency ms: min=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f mean=%.3f%n",
+                millis(latency.getMin()), millis(latency.getValueAtPercentile(50)),
+                millis(latency.getValueAtPercentile(90)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMax()), latency.getMean() / 1e6);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -7,4 +7,13 @@ package com.konami.gaming.client;
 public interface MessageClient {
     void appendResponse(String response);
     void onSendComplete();
+
+    /**
+     * Called once per request when its reply (or failure) arrives, so callers
+     * can track requests that are still in flight.
+     * @param messageId The correlation ID the request was sent with ("" if none)
+     * @param response The reply text, or an error description
+     * @param success false if the request failed before a reply arrived
+     */
+    default void onRequestComplete(String messageId, String response, boolean success) {}
 }
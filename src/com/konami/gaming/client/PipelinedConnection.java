@@ -0,0 +1,284 @@
+package com.konami.gaming.client;
+
+import com.konami.gaming.common.BinaryMessageBuilder;
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Keep-alive connection that pipelines requests: any number of messages can
+ * be written without waiting for replies. A reader thread matches each reply
+ * to its request by the echoed message ID (falling back to send order, which
+ * the server preserves) and reports it through
+ * {@link MessageClient#onRequestComplete(String, String, boolean)}.
+ */
+public class PipelinedConnection implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(PipelinedConnection.class.getName());
+
+    private final String serverIp;
+    private final int serverPort;
+    private final MessageFramer.Mode framing;
+    private Session session;
+    private boolean closed = false;
+
+    public PipelinedConnection(String serverIp, int serverPort) {
+        this(serverIp, serverPort, ClientConnection.defaultFraming());
+    }
+
+    /**
+     * @param framing END_MARKER for the line protocol, LENGTH_PREFIXED to
+     *                negotiate length-prefixed frames with the server
+     */
+    public PipelinedConnection(String serverIp, int serverPort, MessageFramer.Mode framing) {
+        this.serverIp = serverIp;
+        this.serverPort = serverPort;
+        this.framing = framing == MessageFramer.Mode.LENGTH_PREFIXED
+                ? MessageFramer.Mode.LENGTH_PREFIXED : MessageFramer.Mode.END_MARKER;
+    }
+
+    /**
+     * Write a request without waiting for its reply. Connects (or reconnects)
+     * if needed.
+     * @param messageId Correlation ID carried in the message ("" if none)
+     * @param message The message body (without framing)
+     * @param callback Receives the reply for this request
+     * @throws IOException if the connection cannot be opened or written
+     */
+    public void send(String messageId, String message, MessageClient callback) throws IOException {
+        send(messageId, message.getBytes(StandardCharsets.UTF_8), callback);
+    }
+
+    /**
+     * Write an encoded request (XML or binary, see {@link ContentType}) without waiting for its reply.
+     * @throws IOException if the connection fails, or a binary message would be END-framed
+     */
+    public synchronized void send(String messageId, byte[] message, MessageClient callback) throws IOException {
+        if (framing == MessageFramer.Mode.END_MARKER && BinaryMessageBuilder.isBinary(message, 0, message.length)) {
+            throw new IOException("Binary messages require length-prefixed framing");
+        }
+        if (closed) {
+            throw new IOException("Connection is closed");
+        }
+        if (session == null || session.isClosed()) {
+            session = new Session(connect(), framing);
+        }
+        session.write(messageId, message, callback);
+    }
+
+    public synchronized int getInFlightCount() {
+        return session == null ? 0 : session.inFlightCount();
+    }
+
+    public boolean isFor(String ip, int port) {
+        return serverIp.equals(ip) && serverPort == port;
+    }
+
+    /**
+     * Close the socket; requests still in flight complete with success=false.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (session != null) {
+            session.fail("Connection closed");
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(serverIp, serverPort), NetworkConstants.CONNECTION_TIMEOUT);
+            socket.setSoTimeout(NetworkConstants.SOCKET_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Split a reply into {message ID, body}; the ID is "" when the server did not echo one.
+     */
+    public static String[] splitReply(String reply) {
+        if (!reply.startsWith(NetworkConstants.RESPONSE_ID_PREFIX)) {
+            return new String[]{"", reply};
+        }
+        int end = reply.indexOf('\n');
+        String messageId = (end < 0 ? reply : reply.substring(0, end))
+                .substring(NetworkConstants.RESPONSE_ID_PREFIX.length()).trim();
+        String body = end < 0 ? "" : reply.substring(end + 1).trim();
+        return new String[]{messageId, body};
+    }
+
+    private static final class PendingRequest {
+        private final String messageId;
+        private final MessageClient callback;
+
+        PendingRequest(String messageId, MessageClient callback) {
+            this.messageId = messageId;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * One socket plus its reader thread and the requests written on it.
+     */
+    private static final class Session implements Runnable {
+        private final Socket socket;
+        private final MessageFramer.Mode framing;
+        private final OutputStream output;
+        private final InputStream input;
+        // Insertion order is send order; keys are IDs or a generated placeholder
+        private final Map<String, PendingRequest> inFlight = new LinkedHashMap<>();
+        private long anonymousCount = 0;
+        private boolean closed = false;
+        // Held across the blocking socket write, so writes stay in inFlight order; the
+        // session monitor only guards the bookkeeping, so the reader never waits on a write
+        private final Object writeLock = new Object();
+
+        Session(Socket socket, MessageFramer.Mode framing) throws IOException {
+            this.socket = socket;
+            this.framing = framing;
+            this.output = new BufferedOutputStream(socket.getOutputStream());
+            this.input = socket.getInputStream();
+            if (framing == MessageFramer.Mode.LENGTH_PREFIXED) {
+                output.write(NetworkConstants.LENGTH_PREFIX_MAGIC); // goes out with the first message
+            }
+            Thread readerThread = new Thread(this, "Client-Reply-Reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+
+        void write(String messageId, byte[] message, MessageClient callback) throws IOException {
+            byte[] framed = MessageFramer.encode(framing, message);
+            synchronized (writeLock) {
+                String key;
+                synchronized (this) {
+                    if (closed) {
+                        throw new IOException("Connection is closed");
+                    }
+                    key = messageId == null || messageId.isEmpty() ? "\u0000" + anonymousCount++ : messageId;
+                    if (inFlight.containsKey(key)) {
+                        throw new IOException("Message ID already in flight: " + messageId);
+                    }
+                    inFlight.put(key, new PendingRequest(messageId == null ? "" : messageId, callback));
+                }
+                try {
+                    output.write(framed);
+                    output.flush();
+                } catch (IOException e) {
+                    synchronized (this) {
+                        inFlight.remove(key);
+                    }
+                    fail("Failed to write message to server");
+                    throw new IOException("Failed to write message to server", e);
+                }
+            }
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        synchronized int inFlightCount() {
+            return inFlight.size();
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Replies are read in whatever framing the server answers with
+                MessageFramer framer = new MessageFramer();
+                while (true) {
+                    while (framer.nextFrame()) {
+                        String reply = framer.frameText().trim();
+                        if (reply.equals(NetworkConstants.BUSY_MESSAGE)) {
+                            // Turned away at accept; nothing sent on this connection was processed
+                            fail(reply);
+                            return;
+                        }
+                        complete(reply);
+                    }
+                    int read;
+                    try {
+                        read = framer.fill(input);
+                    } catch (SocketTimeoutException e) {
+                        if (inFlightCount() == 0) {
+                            continue; // Idle connection, nothing outstanding
+                        }
+                        throw e;
+                    }
+                    if (read < 0) {
+                        break;
+                    }
+                }
+                fail("Server closed connection");
+            } catch (IOException e) {
+                if (!isClosed()) {
+                    LOGGER.log(Level.WARNING, "Connection error", e);
+                }
+                fail(e.getMessage());
+            }
+        }
+
+        private void complete(String reply) {
+            String[] parts = splitReply(reply);
+            String messageId = parts[0];
+            String body = parts[1];
+
+            PendingRequest request;
+            synchronized (this) {
+                request = messageId.isEmpty() ? null : inFlight.remove(messageId);
+                if (request == null) {
+                    // No (known) ID: replies arrive in send order, so this is the oldest request
+                    Iterator<PendingRequest> oldest = inFlight.values().iterator();
+                    if (!oldest.hasNext()) {
+                        LOGGER.warning("Reply received with no request in flight");
+                        return;
+                    }
+                    request = oldest.next();
+                    oldest.remove();
+                }
+            }
+            request.callback.appendResponse(body);
+            // A message the server could not process is answered with its error reply
+            boolean success = !NetworkConstants.ERROR_MESSAGE.equals(body);
+            request.callback.onRequestComplete(request.messageId, body, success);
+        }
+
+        void fail(String reason) {
+            List<PendingRequest> failed;
+            synchronized (this) {
+                closed = true;
+                failed = new ArrayList<>(inFlight.values());
+                inFlight.clear();
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Error closing connection", e);
+            }
+            for (PendingRequest request : failed) {
+                request.callback.onRequestComplete(request.messageId, reason, false);
+            }
+        }
+    }
+}
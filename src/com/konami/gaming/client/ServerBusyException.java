@@ -0,0 +1,18 @@
+package com.konami.gaming.client;
+
+import com.konami.gaming.common.NetworkConstants;
+
+import java.io.IOException;
+
+/**
+ * The server answered {@link NetworkConstants#BUSY_MESSAGE} because it is
+ * at capacity, and closed the connection. Retry later, ideally with backoff.
+ */
+public class ServerBusyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ServerBusyException() {
+        super(NetworkConstants.BUSY_MESSAGE);
+    }
+}
@@ -1,109 +1,122 @@
 package com.konami.gaming.client;
 
+import com.konami.gaming.common.MessageFramer;
 import com.konami.gaming.common.NetworkConstants;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.ConnectException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 /**
  * Handles client-side socket communication with the server.
- * Runs send and receive in a single async flow.
+ * Runs send and receive in a single async flow, over a one-shot connection,
+ * a caller-owned keep-alive {@link ClientConnection}, or a connection
+ * borrowed from a {@link ConnectionPool}.
  */
 public class ServerConnector implements Runnable {
     
     private static final Logger LOGGER = Logger.getLogger(ServerConnector.class.getName());
     
+    private final ConnectionPool pool;
     private final String serverIp;
     private final int serverPort;
-    private final String message;
+    private ClientConnection connection;
+    private final boolean ownsConnection;
+    private final byte[] message;
     private final MessageClient messageClient;
-    private Socket connectionSocket;
-    private PrintWriter outputWriter;
-    private BufferedReader inputReader;
     
     public ServerConnector(String serverIp, int serverPort, String message, MessageClient messageClient) {
+        this(null, serverIp, serverPort, new ClientConnection(serverIp, serverPort), true,
+             message.getBytes(StandardCharsets.UTF_8), messageClient);
+    }
+    
+    /**
+     * Send an encoded message (XML or binary, see {@link ContentType}) over a
+     * one-shot length-prefixed connection.
+     */
+    public ServerConnector(String serverIp, int serverPort, byte[] message, MessageClient messageClient) {
+        this(null, serverIp, serverPort,
+             new ClientConnection(serverIp, serverPort, MessageFramer.Mode.LENGTH_PREFIXED), true,
+             message, messageClient);
+    }
+    
+    /**
+     * Send over a pooled connection, returned to the pool once the reply arrives.
+     */
+    public ServerConnector(ConnectionPool pool, String serverIp, int serverPort,
+                           String message, MessageClient messageClient) {
+        this(pool, serverIp, serverPort, null, false, message.getBytes(StandardCharsets.UTF_8), messageClient);
+    }
+    
+    public ServerConnector(ConnectionPool pool, String serverIp, int serverPort,
+                           byte[] message, MessageClient messageClient) {
+        this(pool, serverIp, serverPort, null, false, message, messageClient);
+    }
+    
+    /**
+     * Send over an existing session; the connection is left open for the next message.
+     */
+    public ServerConnector(ClientConnection connection, String message, MessageClient messageClient) {
+        this(connection, message.getBytes(StandardCharsets.UTF_8), messageClient);
+    }
+    
+    public ServerConnector(ClientConnection connection, byte[] message, MessageClient messageClient) {
+        this(null, connection.getServerIp(), connection.getServerPort(), connection, false, message, messageClient);
+    }
+    
+    private ServerConnector(ConnectionPool pool, String serverIp, int serverPort, ClientConnection connection,
+                            boolean ownsConnection, byte[] message, MessageClient messageClient) {
+        this.pool = pool;
         this.serverIp = serverIp;
         this.serverPort = serverPort;
+        this.connection = connection;
+        this.ownsConnection = ownsConnection;
         this.message = message;
         this.messageClient = messageClient;
     }
     
     /**
-     * Connect, send message, wait for response, then close. All in one async run.
+     * Send message and wait for response. All in one async run.
      * Guarantees onSendComplete is always called so the UI never stays locked.
      */
     @Override
     public void run() {
         try {
-            connectionSocket = new Socket();
-            connectionSocket.connect(new InetSocketAddress(serverIp, serverPort),
-                    NetworkConstants.CONNECTION_TIMEOUT);
-            connectionSocket.setSoTimeout(NetworkConstants.SOCKET_TIMEOUT);
-
-            outputWriter = new PrintWriter(
-                    new OutputStreamWriter(connectionSocket.getOutputStream(), NetworkConstants.ENCODING),
-                    true);
-            inputReader = new BufferedReader(
-                    new InputStreamReader(connectionSocket.getInputStream(), NetworkConstants.ENCODING));
-
-            String[] lines = message.split("\\n");
-            for (String line : lines) {
-                outputWriter.println(line);
+            if (pool != null) {
+                connection = pool.acquire(serverIp, serverPort);
             }
-            outputWriter.println(NetworkConstants.END_MARKER);
-            LOGGER.info("Message sent to server");
-
-            StringBuilder fullResponse = new StringBuilder();
-            String response;
-            while ((response = inputReader.readLine()) != null) {
-                if (NetworkConstants.END_MARKER.equals(response.trim())) {
-                    break;
-                }
-                fullResponse.append(response).append("\n");
-            }
-
-            if (fullResponse.length() > 0) {
-                messageClient.appendResponse(fullResponse.toString().trim());
+            String response = connection.send(message);
+            if (!response.isEmpty()) {
+                messageClient.appendResponse(response);
             }
+            String[] reply = PipelinedConnection.splitReply(response);
+            // A message the server could not process is answered with its error reply
+            boolean success = !NetworkConstants.ERROR_MESSAGE.equals(reply[1]);
+            messageClient.onRequestComplete(reply[0], reply[1], success);
 
+        } catch (ServerBusyException e) {
+            // Expected under load; the caller decides when to retry
+            LOGGER.fine("Server busy");
+            messageClient.appendResponse("Error: " + e.getMessage());
+            messageClient.onRequestComplete("", e.getMessage(), false);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Connection error", e);
             String msg = e instanceof ConnectException ? "Connection refused. Is the server running?" : e.getMessage();
             messageClient.appendResponse("Error: " + msg);
+            messageClient.onRequestComplete("", msg, false);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error", e);
             messageClient.appendResponse("Error: " + e.getMessage());
+            messageClient.onRequestComplete("", e.getMessage(), false);
         } finally {
-            closeConnection();
-            messageClient.onSendComplete();
-        }
-    }
-    
-    /**
-     * Close connection and clean up resources
-     */
-    private void closeConnection() {
-        try {
-            if (outputWriter != null) {
-                outputWriter.close();
+            if (pool != null && connection != null) {
+                pool.release(connection);
+            } else if (ownsConnection) {
+                connection.close();
             }
-            if (inputReader != null) {
-                inputReader.close();
-            }
-            if (connectionSocket != null && !connectionSocket.isClosed()) {
-                connectionSocket.close();
-            }
-            LOGGER.info("Connection closed");
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Error closing connection", e);
+            messageClient.onSendComplete();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com.konami.gaming.common;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Builds the compact binary message format read by {@link BinaryMessageProcessor}:
+ * <pre>
+ *   magic (0xF9) | version (1) | id | command | pair count | (key | value)*
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8; counts are varints
+ * (unsigned LEB128). Values are sent as-is, with no quoting or escaping.
+ * The payload is not line-safe, so send it with length-prefixed framing.
+ */
+public final class BinaryMessageBuilder {
+
+    static final int VERSION = 1;
+
+    private BinaryMessageBuilder() {}
+
+    /**
+     * @param command The command text
+     * @param keyValuePairs Ordered {key, value} pairs
+     * @param messageId Optional correlation ID; null or empty to omit
+     */
+    public static byte[] build(String command, List<String[]> keyValuePairs, String messageId) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + keyValuePairs.size() * 32);
+        out.write(NetworkConstants.BINARY_MESSAGE_MAGIC);
+        out.write(VERSION);
+        writeString(out, messageId);
+        writeString(out, command);
+        writeVarint(out, keyValuePairs.size());
+        for (String[] pair : keyValuePairs) {
+            writeString(out, pair[0]);
+            writeString(out, pair[1]);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * True if the payload is in the binary format rather than XML. XML text
+     * never starts with this byte, which is invalid in UTF-8.
+     */
+    public static boolean isBinary(byte[] data, int offset, int length) {
+        return length > 0 && data[offset] == NetworkConstants.BINARY_MESSAGE_MAGIC;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
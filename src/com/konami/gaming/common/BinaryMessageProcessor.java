@@ -0,0 +1,114 @@
+package com.konami.gaming.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Decodes messages built by {@link BinaryMessageBuilder}. Strings are decoded
+ * straight from the frame; there is no text cleanup to undo.
+ */
+public class BinaryMessageProcessor implements MessageProcessor {
+
+    private static final Logger LOGGER = Logger.getLogger(BinaryMessageProcessor.class.getName());
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+    private String command = "";
+    private String messageId = "";
+    private final List<String[]> keyValuePairs = new ArrayList<>();
+
+    /**
+     * Decode in place; the array range must not change until {@link #process()} returns.
+     */
+    public BinaryMessageProcessor(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    @Override
+    public void process() {
+        try {
+            if (!BinaryMessageBuilder.isBinary(data, position, end - position)) {
+                throw new IllegalArgumentException("Not a binary message");
+            }
+            position++;
+            int version = data[position++] & 0xFF;
+            if (version != BinaryMessageBuilder.VERSION) {
+                throw new IllegalArgumentException("Unsupported binary message version: " + version);
+            }
+            messageId = readString().trim();
+            command = readString().trim();
+            int count = readVarint();
+            // Each pair needs at least two length bytes
+            if (count > (end - position) / 2) {
+                throw new IllegalArgumentException("Pair count exceeds message size: " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                String key = readString();
+                String value = readString();
+                keyValuePairs.add(new String[]{key, value});
+            }
+            if (position != end) {
+                throw new IllegalArgumentException("Trailing bytes after message");
+            }
+
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Binary message processed: command=" + command + ", pairs=" + keyValuePairs.size());
+            }
+
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error processing binary message", e);
+            command = "Error";
+            messageId = "";
+            keyValuePairs.clear();
+        }
+    }
+
+    private String readString() {
+        int length = readVarint();
+        if (length > end - position) {
+            throw new IllegalArgumentException("String length exceeds message size: " + length);
+        }
+        String s = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return s;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position >= end) {
+                throw new IllegalArgumentException("Truncated binary message");
+            }
+            int b = data[position++] & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Varint out of range");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    @Override
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public List<String[]> getKeyValuePairs() {
+        return keyValuePairs;
+    }
+
+    @Override
+    public String getMessageId() {
+        return messageId;
+    }
+}
@@ -0,0 +1,16 @@
+package com.konami.gaming.common;
+
+import java.io.IOException;
+
+/**
+ * A message or line exceeded the framer's size limit. Thrown while the
+ * message is still being read, so the rest of it is never buffered.
+ */
+public class FrameTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public FrameTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,140 @@
+package com.konami.gaming.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory, log-linear histogram in the style of HdrHistogram. Each
+ * power-of-two range is split into the same number of linear sub-buckets,
+ * so every recorded value keeps a bounded relative error (below 1% at the
+ * default precision) from one nanosecond up to Long.MAX_VALUE.
+ * Recording is lock-free and safe from any number of threads.
+ */
+public class LatencyHistogram {
+
+    private static final int DEFAULT_PRECISION_BITS = 8;
+
+    private final int subBucketHalfCountBits;
+    private final int subBucketHalfCount;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits Sub-buckets per power of two, as bits; relative error is about 2^-(bits-1)
+     */
+    public LatencyHistogram(int precisionBits) {
+        int bits = Math.max(2, Math.min(16, precisionBits));
+        this.subBucketHalfCountBits = bits - 1;
+        this.subBucketHalfCount = 1 << subBucketHalfCountBits;
+        this.counts = new AtomicLongArray((64 - subBucketHalfCountBits + 1) * subBucketHalfCount);
+    }
+
+    /**
+     * Record one value, e.g. a latency in nanoseconds. Negative values count as 0.
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(v);
+        long min;
+        while (v < (min = minValue.get()) && !minValue.compareAndSet(min, v)) {
+            // retry
+        }
+        long max;
+        while (v > (max = maxValue.get()) && !maxValue.compareAndSet(max, v)) {
+            // retry
+        }
+    }
+
+    /**
+     * Add all values recorded by another histogram with the same precision.
+     */
+    public void add(LatencyHistogram other) {
+        if (other.counts.length() != counts.length()) {
+            throw new IllegalArgumentException("Histograms have different precision");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) counts.addAndGet(i, count);
+        }
+        totalCount.addAndGet(other.getCount());
+        totalValue.addAndGet(other.totalValue.get());
+        minValue.accumulateAndGet(other.minValue.get(), Math::min);
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        minValue.set(Long.MAX_VALUE);
+        maxValue.set(0);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : minValue.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * Value at the given percentile (0-100): the highest value equivalent to
+     * the bucket holding that rank, capped at the recorded maximum.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        double p = Math.max(0, Math.min(100, percentile));
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private int indexOf(long value) {
+        if (value < (subBucketHalfCount << 1)) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - subBucketHalfCountBits;
+        return (shift << subBucketHalfCountBits) + (int) (value >>> shift);
+    }
+
+    private long highestEquivalentValue(int index) {
+        if (index < (subBucketHalfCount << 1)) {
+            return index;
+        }
+        int shift = (index >>> subBucketHalfCountBits) - 1;
+        long subBucket = index - ((long) shift << subBucketHalfCountBits);
+        long highest = ((subBucket + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
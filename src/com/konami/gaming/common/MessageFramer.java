@@ -0,0 +1,312 @@
+package com.konami.gaming.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte-level message framing. Raw bytes are read into one growable buffer
+ * and complete frames are exposed as views of it, so the payload is never
+ * decoded to chars or copied before parsing. Two wire formats are supported:
+ * <ul>
+ *   <li>{@link Mode#END_MARKER}: the original line protocol, a frame ends at a
+ *       line that is {@code END} (surrounding whitespace ignored, like {@code line.trim()}).</li>
+ *   <li>{@link Mode#LENGTH_PREFIXED}: a 4-byte big-endian length followed by
+ *       the payload, read with one sized read and no scanning. A client opts in
+ *       by sending {@link NetworkConstants#LENGTH_PREFIX_MAGIC} as the first byte
+ *       of the connection; the server answers the same way.</li>
+ * </ul>
+ * A framer in {@link Mode#NEGOTIATE} settles on a mode from the first byte,
+ * so existing END-marker clients keep working. Clients read replies with a
+ * negotiating framer too, which also copes with an END-marker rejection sent
+ * before the server has read anything.
+ *
+ * <p>Optional size limits are checked as bytes arrive: a length prefix above
+ * the message limit, or an END-marker message or line that grows past its
+ * limit, fails with {@link FrameTooLargeException} before the rest is read.
+ *
+ * <p>A frame view is only valid until the next {@code fill} call, which may
+ * compact the buffer. Not thread-safe; use one framer per connection.
+ */
+public class MessageFramer {
+
+    /** Wire formats; NEGOTIATE picks one from the first byte received. */
+    public enum Mode { NEGOTIATE, END_MARKER, LENGTH_PREFIXED }
+
+    private static final byte[] END_BYTES = NetworkConstants.END_MARKER.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_LINE = (NetworkConstants.END_MARKER + "\n").getBytes(StandardCharsets.US_ASCII);
+    private static final int LENGTH_BYTES = 4;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MIN_READ = 2048;
+    private static final int END_LINE_SLACK = 64;
+
+    private Mode mode;
+    private final int maxFrameBytes;
+    private final int maxLineBytes;
+    private byte[] data;
+    private int limit;        // end of received bytes
+    private int frameStart;   // start of the frame being assembled
+    private int lineStart;    // END_MARKER: start of the line being scanned
+    private int scanPos;      // END_MARKER: next byte to scan
+    private int expectedLength = -1; // LENGTH_PREFIXED: payload length of the frame being assembled
+    private int currentFrameOffset;
+    private int currentFrameLength;
+    private boolean magicSent;
+
+    public MessageFramer() {
+        this(Mode.NEGOTIATE, INITIAL_CAPACITY);
+    }
+
+    public MessageFramer(Mode mode) {
+        this(mode, INITIAL_CAPACITY);
+    }
+
+    public MessageFramer(Mode mode, int initialCapacity) {
+        this(mode, initialCapacity, 0, 0);
+    }
+
+    /**
+     * @param maxFrameBytes Largest accepted message payload; 0 means no limit
+     * @param maxLineBytes Longest accepted line of an END-marker message; 0 means no limit
+     */
+    public MessageFramer(Mode mode, int initialCapacity, int maxFrameBytes, int maxLineBytes) {
+        this.mode = mode;
+        this.maxFrameBytes = maxFrameBytes > 0 ? maxFrameBytes : Integer.MAX_VALUE;
+        this.maxLineBytes = maxLineBytes > 0 ? maxLineBytes : Integer.MAX_VALUE;
+        this.data = new byte[Math.max(64, initialCapacity)];
+    }
+
+    /**
+     * The negotiated wire format; still NEGOTIATE until the first byte arrives.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Read available bytes from a blocking stream.
+     * @return bytes read, or -1 at end of stream
+     */
+    public int fill(InputStream in) throws IOException {
+        ensureWritable();
+        int read = in.read(data, limit, data.length - limit);
+        if (read > 0) limit += read;
+        return read;
+    }
+
+    /**
+     * Read available bytes from a (non-blocking) channel.
+     * @return bytes read (possibly 0), or -1 at end of stream
+     */
+    public int fill(ReadableByteChannel channel) throws IOException {
+        ensureWritable();
+        int read = channel.read(ByteBuffer.wrap(data, limit, data.length - limit));
+        if (read > 0) limit += read;
+        return read;
+    }
+
+    /**
+     * Look for the next complete frame in the received bytes.
+     * @return true if a frame is ready; see {@link #frameOffset()} etc.
+     * @throws FrameTooLargeException if the message or a line is over its limit
+     * @throws IOException if a length prefix is invalid
+     */
+    public boolean nextFrame() throws IOException {
+        if (mode == Mode.NEGOTIATE) {
+            if (limit == frameStart) {
+                return false;
+            }
+            if (data[frameStart] == NetworkConstants.LENGTH_PREFIX_MAGIC) {
+                mode = Mode.LENGTH_PREFIXED;
+                frameStart++;
+                lineStart = frameStart;
+                scanPos = frameStart;
+            } else {
+                mode = Mode.END_MARKER;
+            }
+        }
+        return mode == Mode.LENGTH_PREFIXED ? nextLengthPrefixedFrame() : nextEndMarkerFrame();
+    }
+
+    /** Backing array of the current frame. */
+    public byte[] frameArray() {
+        return data;
+    }
+
+    public int frameOffset() {
+        return currentFrameOffset;
+    }
+
+    /** Length of the current frame payload; 0 for an empty message. */
+    public int frameLength() {
+        return currentFrameLength;
+    }
+
+    /** Stream view of the current frame, without copying. */
+    public InputStream frameStream() {
+        return new ByteArrayInputStream(data, currentFrameOffset, currentFrameLength);
+    }
+
+    /** The current frame decoded as UTF-8 text. */
+    public String frameText() {
+        return new String(data, currentFrameOffset, currentFrameLength, StandardCharsets.UTF_8);
+    }
+
+    /** Received bytes not yet returned as frames. */
+    public int bufferedBytes() {
+        return limit - frameStart;
+    }
+
+    /** True if bytes of an unfinished message are buffered. */
+    public boolean hasPartialFrame() {
+        return limit > frameStart;
+    }
+
+    /**
+     * Encode an outgoing payload in this connection's wire format. The first
+     * length-prefixed frame is preceded by the magic byte so the peer's
+     * negotiating framer can follow; an undecided framer answers with END.
+     */
+    public byte[] encodeReply(byte[] payload) {
+        if (mode != Mode.LENGTH_PREFIXED) {
+            return encode(Mode.END_MARKER, payload);
+        }
+        byte[] frame = encode(Mode.LENGTH_PREFIXED, payload);
+        if (magicSent) {
+            return frame;
+        }
+        magicSent = true;
+        byte[] announced = new byte[frame.length + 1];
+        announced[0] = NetworkConstants.LENGTH_PREFIX_MAGIC;
+        System.arraycopy(frame, 0, announced, 1, frame.length);
+        return announced;
+    }
+
+    /**
+     * Encode a payload as one frame of the given wire format, without the
+     * negotiation byte.
+     */
+    public static byte[] encode(Mode mode, byte[] payload) {
+        if (mode == Mode.LENGTH_PREFIXED) {
+            byte[] frame = new byte[LENGTH_BYTES + payload.length];
+            frame[0] = (byte) (payload.length >>> 24);
+            frame[1] = (byte) (payload.length >>> 16);
+            frame[2] = (byte) (payload.length >>> 8);
+            frame[3] = (byte) payload.length;
+            System.arraycopy(payload, 0, frame, LENGTH_BYTES, payload.length);
+            return frame;
+        }
+        boolean needsNewline = payload.length > 0 && payload[payload.length - 1] != '\n';
+        byte[] frame = new byte[payload.length + (needsNewline ? 1 : 0) + END_LINE.length];
+        System.arraycopy(payload, 0, frame, 0, payload.length);
+        if (needsNewline) frame[payload.length] = '\n';
+        System.arraycopy(END_LINE, 0, frame, frame.length - END_LINE.length, END_LINE.length);
+        return frame;
+    }
+
+    public static byte[] encode(Mode mode, String payload) {
+        return encode(mode, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean nextEndMarkerFrame() throws FrameTooLargeException {
+        while (scanPos < limit) {
+            if (data[scanPos++] != '\n') {
+                continue;
+            }
+            int lineEnd = scanPos - 1;
+            if (lineEnd - lineStart > maxLineBytes) {
+                throw new FrameTooLargeException("Line exceeds " + maxLineBytes + " bytes");
+            }
+            if (isEndLine(lineStart, lineEnd)) {
+                currentFrameOffset = frameStart;
+                currentFrameLength = lineStart - frameStart;
+                if (currentFrameLength > maxFrameBytes) {
+                    throw new FrameTooLargeException("Message exceeds " + maxFrameBytes + " bytes");
+                }
+                frameStart = scanPos;
+                lineStart = scanPos;
+                return true;
+            }
+            lineStart = scanPos;
+        }
+        // Fail on an unfinished message as soon as it is over a limit, without reading the rest.
+        // A short unfinished line may still turn out to be the END line, so it does not count yet.
+        int pendingLine = scanPos - lineStart;
+        if (pendingLine > maxLineBytes) {
+            throw new FrameTooLargeException("Line exceeds " + maxLineBytes + " bytes");
+        }
+        if (lineStart - frameStart + (pendingLine > END_LINE_SLACK ? pendingLine : 0) > maxFrameBytes) {
+            throw new FrameTooLargeException("Message exceeds " + maxFrameBytes + " bytes");
+        }
+        return false;
+    }
+
+    private boolean nextLengthPrefixedFrame() throws IOException {
+        if (expectedLength < 0) {
+            if (limit - frameStart < LENGTH_BYTES) {
+                return false;
+            }
+            expectedLength = ((data[frameStart] & 0xFF) << 24) | ((data[frameStart + 1] & 0xFF) << 16)
+                    | ((data[frameStart + 2] & 0xFF) << 8) | (data[frameStart + 3] & 0xFF);
+            if (expectedLength < 0) {
+                throw new IOException("Invalid frame length: " + expectedLength);
+            }
+            if (expectedLength > maxFrameBytes) {
+                throw new FrameTooLargeException("Message of " + expectedLength + " bytes exceeds " + maxFrameBytes);
+            }
+        }
+        int payloadStart = frameStart + LENGTH_BYTES;
+        if (limit - payloadStart < expectedLength) {
+            return false;
+        }
+        currentFrameOffset = payloadStart;
+        currentFrameLength = expectedLength;
+        frameStart = payloadStart + expectedLength;
+        lineStart = frameStart;
+        scanPos = frameStart;
+        expectedLength = -1;
+        return true;
+    }
+
+    /**
+     * Make room for the next read: drop consumed frames, then grow if the
+     * unfinished frame fills the buffer. A length-prefixed frame gets room for
+     * its whole payload at once.
+     */
+    private void ensureWritable() {
+        int needed = MIN_READ;
+        if (expectedLength >= 0) {
+            needed = Math.max(1, frameStart + LENGTH_BYTES + expectedLength - limit);
+        }
+        if (data.length - limit >= needed) {
+            return;
+        }
+        if (frameStart > 0) {
+            int pending = limit - frameStart;
+            System.arraycopy(data, frameStart, data, 0, pending);
+            lineStart -= frameStart;
+            scanPos -= frameStart;
+            limit = pending;
+            frameStart = 0;
+        }
+        if (data.length - limit < needed) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, limit + needed));
+        }
+    }
+
+    private boolean isEndLine(int start, int end) {
+        while (start < end && (data[start] & 0xFF) <= ' ') start++;
+        while (end > start && (data[end - 1] & 0xFF) <= ' ') end--;
+        if (end - start != END_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < END_BYTES.length; i++) {
+            if (data[start + i] != END_BYTES[i]) return false;
+        }
+        return true;
+    }
+}
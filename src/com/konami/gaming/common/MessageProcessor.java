@@ -0,0 +1,24 @@
+package com.konami.gaming.common;
+
+import java.util.List;
+
+/**
+ * Decodes one received message into a command and ordered key-value pairs.
+ * Implemented for each supported content type (XML and the compact binary codec).
+ */
+public interface MessageProcessor {
+
+    /**
+     * Decode the payload. Malformed input sets the command to "Error" instead of throwing.
+     */
+    void process();
+
+    String getCommand();
+
+    List<String[]> getKeyValuePairs();
+
+    /**
+     * Optional correlation ID, or "" when absent.
+     */
+    String getMessageId();
+}
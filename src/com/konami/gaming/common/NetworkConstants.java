@@ -16,12 +16,37 @@ public final class NetworkConstants {
     // Connection constants
     public static final int CONNECTION_TIMEOUT = 3000; // 3 seconds
     public static final int SOCKET_TIMEOUT = 10000; // 10 seconds
+    public static final int SESSION_IDLE_TIMEOUT = 30000; // 30 seconds
+    
+    // Client connection pool constants
+    public static final int POOL_MAX_CONNECTIONS_PER_ROUTE = 8;
+    public static final int POOL_MAX_IDLE_TIME = 20000; // 20 seconds, below SESSION_IDLE_TIMEOUT
+    
+    // Server worker pool constants
+    public static final int DEFAULT_WORKER_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    public static final int DEFAULT_WORKER_QUEUE_DEPTH = 256;
+    public static final int DEFAULT_EVENT_LOOPS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    
+    // Server admission control constants
+    public static final int DEFAULT_MAX_CONNECTIONS = 1024;
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024; // 64 MB
+    public static final int DEFAULT_MAX_MESSAGE_BYTES = 4 * 1024 * 1024; // 4 MB
+    public static final int DEFAULT_MAX_LINE_BYTES = 64 * 1024; // 64 KB
+
+    // Server message journal constants
+    public static final long DEFAULT_JOURNAL_FSYNC_INTERVAL = 1000; // 1 second
+    public static final long DEFAULT_JOURNAL_SEGMENT_BYTES = 64L * 1024 * 1024; // 64 MB
     
     // Protocol constants
     public static final String END_MARKER = "END";
     public static final String ENCODING = "UTF-8";
+    public static final String MESSAGE_ID_ATTRIBUTE = "id";
+    public static final String RESPONSE_ID_PREFIX = "Id: ";
+    public static final byte LENGTH_PREFIX_MAGIC = (byte) 0xF8; // never valid in UTF-8, so no END-marker message starts with it
+    public static final byte BINARY_MESSAGE_MAGIC = (byte) 0xF9; // first byte of a binary payload; XML never starts with it
     
     // Server response messages
     public static final String CONFIRMATION_MESSAGE = "Confirmed: Message has been received, come again!";
     public static final String ERROR_MESSAGE = "Error processing request";
+    public static final String BUSY_MESSAGE = "Busy: Server is at capacity, try again later";
 }
\ No newline at end of file
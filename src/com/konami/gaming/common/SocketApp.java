@@ -2,6 +2,7 @@ package com.konami.gaming.common;
 
 import com.konami.gaming.server.ServerMain;
 import com.konami.gaming.client.ClientMain;
+import com.konami.gaming.logging.AsyncLogHandler;
 
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -33,6 +34,7 @@ public class SocketApp extends Application {
     }
 
     public static void main(String[] args) {
+        AsyncLogHandler.installIfEnabled();
         launch(args);
     }
 }
@@ -0,0 +1,139 @@
+package com.konami.gaming.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One received message as stored in the journal.
+ *
+ * <p>On disk each entry is a record:
+ * <pre>
+ *   int  payload length
+ *   int  CRC32C of everything after this field
+ *   long sequence
+ *   long timestamp (epoch millis)
+ *   payload: client address, message ID, command, int pair count, then key/value per pair
+ * </pre>
+ * Strings are written as an int byte length followed by UTF-8 bytes.
+ */
+public final class JournalEntry {
+
+    /** Bytes before the payload. */
+    static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+
+    private final long sequence;
+    private final long timestamp;
+    private final String clientAddress;
+    private final String messageId;
+    private final String command;
+    private final List<String[]> keyValuePairs;
+
+    public JournalEntry(long sequence, long timestamp, String clientAddress, String messageId,
+                        String command, List<String[]> keyValuePairs) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.clientAddress = clientAddress;
+        this.messageId = messageId;
+        this.command = command;
+        this.keyValuePairs = Collections.unmodifiableList(keyValuePairs);
+    }
+
+    /** Position of the entry in the journal, starting at 1. */
+    public long getSequence() { return sequence; }
+
+    /** Time the server received the message, in epoch milliseconds. */
+    public long getTimestamp() { return timestamp; }
+
+    /** Remote address of the client as "host:port", or "" when unknown. */
+    public String getClientAddress() { return clientAddress; }
+
+    public String getMessageId() { return messageId; }
+
+    public String getCommand() { return command; }
+
+    /** Ordered {key, value} pairs. */
+    public List<String[]> getKeyValuePairs() { return keyValuePairs; }
+
+    /**
+     * Encode the payload part of a record. Done on the appending thread, so
+     * the journal writer only copies bytes.
+     */
+    static byte[] encodePayload(String clientAddress, String messageId, String command, List<String[]> keyValuePairs) {
+        byte[][] strings = new byte[3 + keyValuePairs.size() * 2][];
+        strings[0] = utf8(clientAddress);
+        strings[1] = utf8(messageId);
+        strings[2] = utf8(command);
+        int size = 4;
+        for (int i = 0; i < keyValuePairs.size(); i++) {
+            String[] pair = keyValuePairs.get(i);
+            strings[3 + i * 2] = utf8(pair[0]);
+            strings[4 + i * 2] = utf8(pair[1]);
+        }
+        for (byte[] string : strings) {
+            size += 4 + string.length;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        for (int i = 0; i < strings.length; i++) {
+            payload.putInt(strings[i].length).put(strings[i]);
+            if (i == 2) {
+                payload.putInt(keyValuePairs.size());
+            }
+        }
+        return payload.array();
+    }
+
+    /**
+     * Decode a payload written by {@link #encodePayload}.
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    static JournalEntry decode(long sequence, long timestamp, ByteBuffer payload) {
+        try {
+            String clientAddress = readString(payload);
+            String messageId = readString(payload);
+            String command = readString(payload);
+            int pairCount = payload.getInt();
+            if (pairCount < 0 || pairCount > payload.remaining() / 8) {
+                throw new IllegalArgumentException("Bad pair count " + pairCount);
+            }
+            List<String[]> pairs = new ArrayList<>(pairCount);
+            for (int i = 0; i < pairCount; i++) {
+                pairs.add(new String[]{readString(payload), readString(payload)});
+            }
+            return new JournalEntry(sequence, timestamp, clientAddress, messageId, command, pairs);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed journal entry " + sequence, e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append('#').append(sequence).append(' ').append(timestamp).append(' ')
+            .append(clientAddress).append(' ').append(command);
+        if (!messageId.isEmpty()) {
+            text.append(" id=").append(messageId);
+        }
+        for (String[] pair : keyValuePairs) {
+            text.append(' ').append(pair[0]).append('=').append(pair[1]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,241 @@
+package com.konami.gaming.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory indexes over a message journal, so past traffic can be found
+ * without scanning the segment files. For every entry the index keeps its
+ * file position and timestamp, plus posting lists of sequence numbers per
+ * command, per key and per key=value pair. Lookups are binary searches and
+ * map gets; only the matching entries are then read from disk.
+ *
+ * <p>Entries are added by a single thread (the journal writer, after the
+ * entry is written) while any number of threads query without locking.
+ * Timestamps never decrease in sequence order, so a time range is a
+ * contiguous range of sequence numbers.
+ */
+public class JournalIndex {
+
+    private static final char KEY_VALUE_SEPARATOR = '\u0000';
+    private static final int POSTINGS_CAPACITY = 16;
+    private static final int SEGMENT_CAPACITY = 1024;
+
+    private final Map<String, LongList> byCommand = new ConcurrentHashMap<>();
+    private final Map<String, LongList> byKey = new ConcurrentHashMap<>();
+    private final Map<String, LongList> byKeyValue = new ConcurrentHashMap<>();
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private volatile long entryCount;
+
+    /**
+     * Build an index of an existing journal directory, e.g. for offline
+     * queries or replay. Reads every segment once.
+     */
+    public static JournalIndex build(Path directory) throws IOException {
+        JournalIndex index = new JournalIndex();
+        for (Path segment : JournalReader.segments(directory)) {
+            index.addSegment(segment);
+        }
+        return index;
+    }
+
+    /**
+     * Index every good entry of a segment file.
+     * @return the reader's final state: last sequence and end of the last good entry
+     */
+    long[] addSegment(Path segment) throws IOException {
+        try (JournalReader reader = new JournalReader(segment)) {
+            long offset = reader.position();
+            JournalEntry entry;
+            long lastTimestamp = 0;
+            while ((entry = reader.next()) != null) {
+                add(segment, offset, entry.getSequence(), entry.getTimestamp(),
+                        entry.getCommand(), entry.getKeyValuePairs());
+                lastTimestamp = entry.getTimestamp();
+                offset = reader.position();
+            }
+            return new long[]{reader.lastSequence(), offset, lastTimestamp};
+        }
+    }
+
+    /**
+     * Add one written entry. Single writer only; the location is published
+     * before the postings, so every sequence a query finds can be read.
+     */
+    void add(Path segmentFile, long offset, long sequence, long timestamp, String command, List<String[]> keyValuePairs) {
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || !segment.path.equals(segmentFile)
+                || segment.firstSequence + segment.offsets.size() != sequence) {
+            segment = new Segment(segmentFile, sequence);
+            segments.add(segment);
+        }
+        segment.offsets.add(offset);
+        segment.timestamps.add(timestamp);
+
+        posting(byCommand, command).add(sequence);
+        for (String[] pair : keyValuePairs) {
+            addPosting(byKey, pair[0], sequence);
+            addPosting(byKeyValue, keyValue(pair[0], pair[1]), sequence);
+        }
+        entryCount++;
+    }
+
+    /** Number of entries indexed. */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /** Sequence numbers of entries with this command, oldest first. */
+    public long[] findByCommand(String command) {
+        return findByCommand(command, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /** As {@link #findByCommand(String)}, limited to entries received in [fromMillis, toMillis). */
+    public long[] findByCommand(String command, long fromMillis, long toMillis) {
+        return find(byCommand.get(command), fromMillis, toMillis);
+    }
+
+    /** Sequence numbers of entries with a pair for this key, oldest first. */
+    public long[] findByKey(String key) {
+        return findByKey(key, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public long[] findByKey(String key, long fromMillis, long toMillis) {
+        return find(byKey.get(key), fromMillis, toMillis);
+    }
+
+    /** Sequence numbers of entries with the pair key=value, oldest first. */
+    public long[] findByKeyValue(String key, String value) {
+        return findByKeyValue(key, value, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public long[] findByKeyValue(String key, String value, long fromMillis, long toMillis) {
+        return find(byKeyValue.get(keyValue(key, value)), fromMillis, toMillis);
+    }
+
+    /** Sequence numbers of all entries received in [fromMillis, toMillis). */
+    public long[] findByTime(long fromMillis, long toMillis) {
+        long first = firstSequenceAt(fromMillis);
+        long end = firstSequenceAt(toMillis);
+        long[] sequences = new long[(int) Math.max(0, end - first)];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = first + i;
+        }
+        return sequences;
+    }
+
+    /**
+     * Read entries by sequence number, e.g. the result of a find method.
+     * Sequences that are not in the index are skipped.
+     */
+    public List<JournalEntry> read(long[] sequences) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>(sequences.length);
+        JournalReader reader = null;
+        try {
+            for (long sequence : sequences) {
+                Segment segment = segmentOf(sequence);
+                if (segment == null) {
+                    continue;
+                }
+                if (reader == null || !reader.getSegment().equals(segment.path)) {
+                    if (reader != null) reader.close();
+                    reader = new JournalReader(segment.path);
+                }
+                JournalEntry entry = reader.readAt(segment.offsets.get((int) (sequence - segment.firstSequence)));
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } finally {
+            if (reader != null) reader.close();
+        }
+        return entries;
+    }
+
+    private long[] find(LongList postings, long fromMillis, long toMillis) {
+        if (postings == null) {
+            return new long[0];
+        }
+        int size = postings.size();
+        if (fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE) {
+            return postings.copyRange(0, size);
+        }
+        int from = postings.lowerBound(firstSequenceAt(fromMillis), size);
+        int to = postings.lowerBound(firstSequenceAt(toMillis), size);
+        return postings.copyRange(from, to);
+    }
+
+    /**
+     * First sequence received at or after a time, or one past the last entry.
+     */
+    private long firstSequenceAt(long timestamp) {
+        long end = 1;
+        for (Segment segment : segments) {
+            int n = segment.timestamps.size();
+            if (n == 0) {
+                continue;
+            }
+            if (segment.timestamps.get(n - 1) >= timestamp) {
+                return segment.firstSequence + segment.timestamps.lowerBound(timestamp, n);
+            }
+            end = segment.firstSequence + n;
+        }
+        return end;
+    }
+
+    private Segment segmentOf(long sequence) {
+        List<Segment> current = segments;
+        int low = 0;
+        int high = current.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Segment segment = current.get(mid);
+            if (sequence < segment.firstSequence) {
+                high = mid - 1;
+            } else if (sequence >= segment.firstSequence + segment.offsets.size()) {
+                low = mid + 1;
+            } else {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private static LongList posting(Map<String, LongList> index, String term) {
+        return index.computeIfAbsent(term, t -> new LongList(POSTINGS_CAPACITY));
+    }
+
+    /**
+     * Add an entry to a term's postings once, even if the message repeats the
+     * key or pair. Postings grow in sequence order, so a repeat is the last element.
+     */
+    private static void addPosting(Map<String, LongList> index, String term, long sequence) {
+        LongList postings = posting(index, term);
+        int n = postings.size();
+        if (n == 0 || postings.get(n - 1) != sequence) {
+            postings.add(sequence);
+        }
+    }
+
+    private static String keyValue(String key, String value) {
+        return key + KEY_VALUE_SEPARATOR + value;
+    }
+
+    /** Locations and timestamps of a run of consecutive entries in one file. */
+    private static final class Segment {
+        private final Path path;
+        private final long firstSequence;
+        private final LongList offsets = new LongList(SEGMENT_CAPACITY);
+        private final LongList timestamps = new LongList(SEGMENT_CAPACITY);
+
+        Segment(Path path, long firstSequence) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+        }
+    }
+}
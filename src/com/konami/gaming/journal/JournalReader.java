@@ -0,0 +1,158 @@
+package com.konami.gaming.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads the entries of one journal segment, in order or at a known position.
+ * Reading stops at the end of the file or at the first damaged record, such
+ * as one left half-written by a crash; {@link #position()} is then the end of
+ * the last good record.
+ */
+public class JournalReader implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int WINDOW_BYTES = 64 * 1024;
+
+    private final Path segment;
+    private final FileChannel channel;
+    private ByteBuffer window = ByteBuffer.allocate(WINDOW_BYTES);
+    private long windowStart;
+    private long position;
+    private long lastSequence;
+
+    public JournalReader(Path segment) throws IOException {
+        this.segment = segment;
+        this.channel = FileChannel.open(segment, StandardOpenOption.READ);
+        window.limit(0);
+    }
+
+    /**
+     * Segment files of a journal directory, oldest first. Each file is named
+     * after the sequence number of its first entry.
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        // Names are zero-padded, so name order is sequence order
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+    }
+
+    /** Sequence number of the first entry in a segment, from its file name. */
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Read the entry after the previous one.
+     * @return the entry, or null at the end of the segment or a damaged record
+     */
+    public JournalEntry next() throws IOException {
+        JournalEntry entry = readAt(position);
+        if (entry != null) {
+            lastSequence = entry.getSequence();
+        }
+        return entry;
+    }
+
+    /**
+     * Read the entry starting at a byte offset in the segment, e.g. one found
+     * through an index. Reading continues from there with {@link #next()}.
+     * @return the entry, or null if no complete, undamaged record starts there
+     */
+    public JournalEntry readAt(long offset) throws IOException {
+        if (!fill(offset, JournalEntry.HEADER_BYTES)) {
+            return null;
+        }
+        int start = (int) (offset - windowStart);
+        int length = window.getInt(start);
+        int checksum = window.getInt(start + 4);
+        // A damaged length must not turn into a huge allocation
+        if (length < 0 || length > channel.size() - offset - JournalEntry.HEADER_BYTES
+                || !fill(offset, JournalEntry.HEADER_BYTES + length)) {
+            return null;
+        }
+        start = (int) (offset - windowStart);
+        CRC32C crc = new CRC32C();
+        crc.update(window.array(), start + 8, JournalEntry.HEADER_BYTES - 8 + length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        long sequence = window.getLong(start + 8);
+        long timestamp = window.getLong(start + 16);
+        ByteBuffer payload = ByteBuffer.wrap(window.array(), start + JournalEntry.HEADER_BYTES, length).slice();
+        JournalEntry entry;
+        try {
+            entry = JournalEntry.decode(sequence, timestamp, payload);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        position = offset + JournalEntry.HEADER_BYTES + length;
+        return entry;
+    }
+
+    /** Byte offset just past the last entry read. */
+    public long position() {
+        return position;
+    }
+
+    /** Sequence number of the last entry read with {@link #next()}, or 0. */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    public Path getSegment() {
+        return segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Make bytes [offset, offset + length) available in the window.
+     * @return false if the file ends first
+     */
+    private boolean fill(long offset, int length) throws IOException {
+        if (offset >= windowStart && offset + length <= windowStart + window.limit()) {
+            return true;
+        }
+        if (length > window.capacity()) {
+            window = ByteBuffer.allocate(length);
+        }
+        window.clear();
+        windowStart = offset;
+        while (window.hasRemaining()) {
+            if (channel.read(window, offset + window.position()) < 0) {
+                break;
+            }
+        }
+        window.flip();
+        return window.limit() >= length;
+    }
+}
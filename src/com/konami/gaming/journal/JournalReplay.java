@@ -0,0 +1,231 @@
+package com.konami.gaming.journal;
+
+import com.konami.gaming.client.ClientConnection;
+import com.konami.gaming.client.ContentType;
+import com.konami.gaming.client.PipelinedConnection;
+import com.konami.gaming.client.ServerBusyException;
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.logging.AsyncLogHandler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Command-line query and replay tool for a message journal. Matching
+ * entries are found through a {@link JournalIndex}, so only they are read
+ * from disk. They are then either listed, or sent back to a running server
+ * in journal order. Replay keeps the original gaps between messages, scaled
+ * by the speed factor.
+ *
+ * <pre>
+ *   java -cp target/classes com.konami.gaming.journal.JournalReplay --dir=journal \
+ *       --from=2026-10-18T09:00:00Z --to=2026-10-18T10:00:00Z --command=Print --port=8080 --speed=10
+ * </pre>
+ * Filters (all optional, combined with AND): --from/--to (ISO-8601 instant
+ * or epoch millis, to exclusive), --command, --key, and --value (with --key).
+ * --list prints the matches instead of replaying them; --speed=0 replays as
+ * fast as the server replies.
+ */
+public class JournalReplay {
+
+    // Held so the level sticks; per-message client logging would swamp the output
+    private static final Logger CLIENT_LOGGER = Logger.getLogger("com.konami.gaming");
+
+    private static final int READ_CHUNK = 1024;
+
+    private final Path directory;
+    private final long fromMillis;
+    private final long toMillis;
+    private final String command;
+    private final String key;
+    private final String value;
+    private final boolean listOnly;
+    private final String host;
+    private final int port;
+    private final double speed;
+    private final ContentType contentType;
+    private final MessageFramer.Mode framing;
+
+    private long sent;
+    private long busy;
+    private long errors;
+
+    public JournalReplay(Map<String, String> options) {
+        if (!options.containsKey("dir")) {
+            throw new IllegalArgumentException("--dir is required");
+        }
+        this.directory = Paths.get(options.get("dir"));
+        this.fromMillis = options.containsKey("from") ? parseTime(options.get("from")) : Long.MIN_VALUE;
+        this.toMillis = options.containsKey("to") ? parseTime(options.get("to")) : Long.MAX_VALUE;
+        this.command = options.get("command");
+        this.key = options.get("key");
+        this.value = options.get("value");
+        if (value != null && key == null) {
+            throw new IllegalArgumentException("--value needs --key");
+        }
+        this.listOnly = options.containsKey("list");
+        this.host = options.getOrDefault("host", "localhost");
+        this.port = Integer.parseInt(options.getOrDefault("port", String.valueOf(NetworkConstants.DEFAULT_PORT)));
+        this.speed = Math.max(0, Double.parseDouble(options.getOrDefault("speed", "1")));
+        this.contentType = ContentType.valueOf(
+                options.getOrDefault("content-type", ContentType.fromSystemProperties().name()).toUpperCase(Locale.ROOT));
+        this.framing = contentType == ContentType.BINARY ? MessageFramer.Mode.LENGTH_PREFIXED
+                : ClientConnection.defaultFraming();
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--list")) {
+                options.put("list", "true");
+                continue;
+            }
+            if (arg.equals("--help") || !arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Usage: JournalReplay --dir=<journal dir> [--from=<time>] [--to=<time>]"
+                        + " [--command=C] [--key=K [--value=V]] [--list]"
+                        + " [--host=localhost] [--port=8080] [--speed=1 (0 = unthrottled)] [--content-type=xml|binary]");
+                System.exit(arg.equals("--help") ? 0 : 1);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        AsyncLogHandler.installIfEnabled();
+        CLIENT_LOGGER.setLevel(Level.WARNING);
+        try {
+            new JournalReplay(options).run();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Replay failed: " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public void run() throws IOException {
+        long indexStart = System.nanoTime();
+        JournalIndex index = JournalIndex.build(directory);
+        long[] sequences = select(index);
+        System.out.printf("Indexed %d entries in %d ms; %d match%n", index.getEntryCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - indexStart), sequences.length);
+        if (sequences.length == 0) {
+            return;
+        }
+
+        ClientConnection connection = listOnly ? null : new ClientConnection(host, port, framing);
+        try {
+            long replayStart = System.nanoTime();
+            long firstTimestamp = Long.MIN_VALUE;
+            for (int from = 0; from < sequences.length; from += READ_CHUNK) {
+                long[] chunk = Arrays.copyOfRange(sequences, from, Math.min(sequences.length, from + READ_CHUNK));
+                for (JournalEntry entry : index.read(chunk)) {
+                    if (listOnly) {
+                        System.out.println(entry);
+                        continue;
+                    }
+                    if (firstTimestamp == Long.MIN_VALUE) {
+                        firstTimestamp = entry.getTimestamp();
+                    }
+                    pace(replayStart, entry.getTimestamp() - firstTimestamp);
+                    send(connection, entry);
+                }
+            }
+            if (!listOnly) {
+                double seconds = (System.nanoTime() - replayStart) / 1e9;
+                System.out.printf("Replayed %d ok, %d busy, %d errors in %.1fs to %s:%d%n",
+                        sent, busy, errors, seconds, host, port);
+            }
+        } finally {
+            if (connection != null) connection.close();
+        }
+    }
+
+    /**
+     * Look up each filter in the index and intersect the results.
+     */
+    private long[] select(JournalIndex index) {
+        long[] sequences = null;
+        if (key != null) {
+            sequences = value != null ? index.findByKeyValue(key, value, fromMillis, toMillis)
+                    : index.findByKey(key, fromMillis, toMillis);
+        }
+        if (command != null) {
+            long[] byCommand = index.findByCommand(command, fromMillis, toMillis);
+            sequences = sequences == null ? byCommand : intersect(sequences, byCommand);
+        }
+        return sequences != null ? sequences : index.findByTime(fromMillis, toMillis);
+    }
+
+    private void pace(long replayStart, long offsetMillis) {
+        if (speed == 0) {
+            return;
+        }
+        long due = replayStart + (long) (TimeUnit.MILLISECONDS.toNanos(offsetMillis) / speed);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private void send(ClientConnection connection, JournalEntry entry) {
+        try {
+            String reply = connection.send(
+                    contentType.encode(entry.getCommand(), entry.getKeyValuePairs(), entry.getMessageId()));
+            if (NetworkConstants.ERROR_MESSAGE.equals(PipelinedConnection.splitReply(reply)[1])) {
+                errors++;
+                if (errors == 1) {
+                    System.err.println("Server could not process entry " + entry.getSequence());
+                }
+                return;
+            }
+            sent++;
+        } catch (ServerBusyException e) {
+            busy++;
+        } catch (IOException e) {
+            errors++;
+            if (errors == 1) {
+                System.err.println("Error replaying entry " + entry.getSequence() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Sequences in both sorted arrays. */
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static long parseTime(String text) {
+        String trimmed = text.trim();
+        if (trimmed.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(trimmed);
+        }
+        try {
+            return Instant.parse(trimmed).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time, expected e.g. 2026-10-18T09:00:00Z: " + text);
+        }
+    }
+}
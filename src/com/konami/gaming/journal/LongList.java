@@ -0,0 +1,64 @@
+package com.konami.gaming.journal;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of longs with one writer and any number of lock-free
+ * readers. The writer stores the element before publishing the new size, and
+ * a grown array holds every earlier element, so a reader that reads
+ * {@link #size()} first always finds that many elements.
+ */
+final class LongList {
+
+    private volatile long[] values;
+    private volatile int size;
+
+    LongList(int initialCapacity) {
+        this.values = new long[Math.max(1, initialCapacity)];
+    }
+
+    /** Writer thread only. */
+    void add(long value) {
+        long[] current = values;
+        int n = size;
+        if (n == current.length) {
+            current = Arrays.copyOf(current, n + (n >> 1) + 1);
+            values = current;
+        }
+        current[n] = value;
+        size = n + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Caller must have read a size above {@code index}. */
+    long get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Index of the first element at or above {@code value}, among the first
+     * {@code n}; the list must be sorted (non-decreasing).
+     */
+    int lowerBound(long value, int n) {
+        long[] current = values;
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (current[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Elements in [from, to) of a sorted list, as a new array. */
+    long[] copyRange(int from, int to) {
+        return Arrays.copyOfRange(values, from, Math.max(from, to));
+    }
+}
@@ -0,0 +1,426 @@
+package com.konami.gaming.journal;
+
+import com.konami.gaming.common.LatencyHistogram;
+import com.konami.gaming.metrics.Counter;
+import com.konami.gaming.metrics.MetricsRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of received messages, stored as a directory of segment
+ * files. Appending threads encode their entry and queue it; a single writer
+ * thread takes everything queued so far and writes it with one
+ * {@link FileChannel} write (group commit), so many concurrent appends cost
+ * one write and at most one fsync. How long an append waits depends on the
+ * {@link FsyncPolicy}. A segment is closed and a new one started once it
+ * reaches the configured size.
+ *
+ * <p>On open, the last segment is checked and any damaged tail left by a
+ * crash is truncated, so appends continue after the last good entry.
+ * Entry timestamps never decrease in sequence order.
+ *
+ * <p>An indexed journal also keeps a {@link JournalIndex}, built from the
+ * existing segments on open and extended by the writer as entries are written.
+ */
+public class MessageJournal implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(MessageJournal.class.getName());
+
+    /** When written entries are forced to disk. */
+    public enum FsyncPolicy {
+        /** Never; the OS writes the data back in its own time. Appends never wait. */
+        NONE,
+        /** At most every fsync interval; a crash can lose that much. Appends never wait. */
+        INTERVAL,
+        /** After every batch; an append returns once its entry is on disk. */
+        ALWAYS
+    }
+
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final int MAX_BATCH_RECORDS = 1024;
+    private static final int BATCH_BUFFER_BYTES = 256 * 1024;
+    private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long QUEUE_FULL_POLL_MILLIS = 100;
+
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.shared();
+    private static final Counter APPENDS = REGISTRY.counter("konami_journal_appends");
+    private static final Counter BATCHES = REGISTRY.counter("konami_journal_batches");
+    private static final Counter BYTES_WRITTEN = REGISTRY.counter("konami_journal_bytes_written");
+    private static final Counter SEGMENTS = REGISTRY.counter("konami_journal_segments_started");
+    private static final LatencyHistogram FSYNC_NANOS = REGISTRY.histogram("konami_journal_fsync_nanos");
+
+    private final Path directory;
+    private final FsyncPolicy fsync;
+    private final long fsyncIntervalNanos;
+    private final long segmentBytes;
+    private final JournalIndex index;
+    private final BlockingQueue<PendingRecord> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Object appendLock = new Object();
+    private long nextSequence;                 // guarded by appendLock
+    private long lastTimestamp;                // guarded by appendLock
+    private boolean closed;                    // guarded by appendLock
+    private volatile boolean closing;
+    private final Object durableLock = new Object();
+    private volatile long durableSequence;     // highest sequence meeting the fsync policy
+    private volatile IOException failure;
+    private final Thread writerThread;
+
+    // Writer thread only
+    private FileChannel channel;
+    private Path segment;
+    private long segmentSize;
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(BATCH_BUFFER_BYTES);
+    private long writtenSequence;
+    private long lastForce = System.nanoTime();
+
+    /**
+     * Open (or create) the journal in a directory, without an index, and start its writer thread.
+     * @param fsyncIntervalMillis Force interval for {@link FsyncPolicy#INTERVAL}
+     * @param segmentBytes Size after which a new segment file is started
+     */
+    public MessageJournal(Path directory, FsyncPolicy fsync, long fsyncIntervalMillis, long segmentBytes)
+            throws IOException {
+        this(directory, fsync, fsyncIntervalMillis, segmentBytes, false);
+    }
+
+    /**
+     * @param indexed Keep a {@link JournalIndex}; opening then reads every segment
+     */
+    public MessageJournal(Path directory, FsyncPolicy fsync, long fsyncIntervalMillis, long segmentBytes,
+                          boolean indexed) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMillis));
+        this.segmentBytes = Math.max(JournalEntry.HEADER_BYTES, segmentBytes);
+        this.index = indexed ? new JournalIndex() : null;
+        Files.createDirectories(directory);
+        this.nextSequence = recover() + 1;
+        this.writtenSequence = nextSequence - 1;
+        this.durableSequence = writtenSequence;
+
+        REGISTRY.gauge("konami_journal_queue_depth", pending::size);
+        this.writerThread = new Thread(this::writeLoop, "Journal-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        LOGGER.info("Message journal open in " + directory + " (fsync " + fsync + "), next sequence " + nextSequence);
+    }
+
+    /**
+     * Add a message to the journal. Returns as soon as the entry is queued,
+     * or with {@link FsyncPolicy#ALWAYS} once it is on disk. Blocks only if
+     * the writer has fallen a full queue behind.
+     * @return the entry's sequence number
+     * @throws IOException if the journal is closed or its writer has failed
+     */
+    public long append(long timestamp, String clientAddress, String messageId, String command,
+                       List<String[]> keyValuePairs) throws IOException {
+        byte[] payload = JournalEntry.encodePayload(clientAddress, messageId, command, keyValuePairs);
+        long sequence;
+        try {
+            // Sequence order and queue order must match, so both happen under the lock
+            synchronized (appendLock) {
+                checkOpen();
+                sequence = nextSequence;
+                lastTimestamp = Math.max(lastTimestamp, timestamp);
+                PendingRecord record = new PendingRecord(sequence, lastTimestamp, payload, command, keyValuePairs);
+                // Wait for space in slices, so a writer that dies with the queue full fails the append
+                while (!pending.offer(record, QUEUE_FULL_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkOpen();
+                }
+                nextSequence++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted appending to journal");
+        }
+        APPENDS.increment();
+        if (fsync == FsyncPolicy.ALWAYS) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsync;
+    }
+
+    /**
+     * Index of the written entries, or null if the journal is not indexed.
+     * Entries appear in it once written, which may be before they are forced to disk.
+     */
+    public JournalIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Stop accepting appends, write and force everything queued, and close
+     * the current segment.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        closing = true;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IOException("Journal writer failed", failure);
+        }
+        LOGGER.info("Message journal closed at sequence " + writtenSequence);
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Journal writer failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        if (!writerThread.isAlive()) {
+            throw new IOException("Journal writer stopped");
+        }
+    }
+
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (durableLock) {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new IOException("Journal writer failed", failure);
+                }
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal fsync");
+                }
+            }
+        }
+    }
+
+    private void publishDurable(long sequence) {
+        synchronized (durableLock) {
+            durableSequence = sequence;
+            durableLock.notifyAll();
+        }
+    }
+
+    /**
+     * Find the last good entry and reopen its segment for appending.
+     * @return the last sequence number in the journal, or 0 if it is empty
+     */
+    private long recover() throws IOException {
+        List<Path> segments = JournalReader.segments(directory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Path last = segments.get(segments.size() - 1);
+        long[] state; // {last sequence, end of last good entry, last timestamp}
+        if (index != null) {
+            for (Path earlier : segments.subList(0, segments.size() - 1)) {
+                index.addSegment(earlier);
+            }
+            state = index.addSegment(last);
+            LOGGER.info("Indexed " + index.getEntryCount() + " journal entries in " + segments.size() + " segment(s)");
+        } else {
+            state = scan(last);
+        }
+        long lastSequence = state[0];
+        long validEnd = state[1];
+        lastTimestamp = state[2];
+        if (lastSequence == 0) {
+            lastSequence = JournalReader.firstSequence(last) - 1;
+        }
+
+        segment = last;
+        channel = FileChannel.open(last, StandardOpenOption.WRITE);
+        if (channel.size() > validEnd) {
+            LOGGER.warning("Truncating " + (channel.size() - validEnd) + " damaged bytes at the end of " + last);
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(validEnd);
+        segmentSize = validEnd;
+        return lastSequence;
+    }
+
+    private static long[] scan(Path segment) throws IOException {
+        try (JournalReader reader = new JournalReader(segment)) {
+            long lastTimestamp = 0;
+            JournalEntry entry;
+            while ((entry = reader.next()) != null) {
+                lastTimestamp = entry.getTimestamp();
+            }
+            return new long[]{reader.lastSequence(), reader.position(), lastTimestamp};
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingRecord> batch = new ArrayList<>(MAX_BATCH_RECORDS);
+        try {
+            while (true) {
+                long wait = fsync == FsyncPolicy.INTERVAL && writtenSequence > durableSequence
+                        ? Math.max(0, fsyncIntervalNanos - (System.nanoTime() - lastForce))
+                        : IDLE_POLL_NANOS;
+                PendingRecord first = pending.poll(wait, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH_RECORDS - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                } else if (closing && pending.isEmpty()) {
+                    break;
+                }
+                if (fsync == FsyncPolicy.INTERVAL && writtenSequence > durableSequence
+                        && System.nanoTime() - lastForce >= fsyncIntervalNanos) {
+                    force();
+                }
+            }
+            if (fsync != FsyncPolicy.NONE && writtenSequence > durableSequence) {
+                force();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Journal write failed; journaling stopped", e);
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Journal writer interrupted");
+        } finally {
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Error closing journal segment", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a batch with as few channel writes as possible, starting new
+     * segments where needed.
+     */
+    private void writeBatch(List<PendingRecord> batch) throws IOException {
+        CRC32C crc = new CRC32C();
+        for (PendingRecord record : batch) {
+            int size = JournalEntry.HEADER_BYTES + record.payload.length;
+            if (channel == null || (segmentSize > 0 && segmentSize + batchBuffer.position() + size > segmentBytes)) {
+                writeBuffer();
+                startSegment(record.sequence);
+            }
+            if (batchBuffer.remaining() < size) {
+                writeBuffer();
+                if (batchBuffer.capacity() < size) {
+                    batchBuffer = ByteBuffer.allocate(size);
+                }
+            }
+            record.segment = segment;
+            record.offset = segmentSize + batchBuffer.position();
+            int start = batchBuffer.position();
+            batchBuffer.putInt(record.payload.length).putInt(0)
+                       .putLong(record.sequence).putLong(record.timestamp).put(record.payload);
+            crc.reset();
+            crc.update(batchBuffer.array(), start + 8, size - 8);
+            batchBuffer.putInt(start + 4, (int) crc.getValue());
+        }
+        writeBuffer();
+        if (batchBuffer.capacity() > BATCH_BUFFER_BYTES) {
+            batchBuffer = ByteBuffer.allocate(BATCH_BUFFER_BYTES);
+        }
+        writtenSequence = batch.get(batch.size() - 1).sequence;
+        BATCHES.increment();
+        if (index != null) {
+            for (PendingRecord record : batch) {
+                index.add(record.segment, record.offset, record.sequence, record.timestamp,
+                        record.command, record.keyValuePairs);
+            }
+        }
+
+        if (fsync == FsyncPolicy.ALWAYS) {
+            force();
+        } else if (fsync == FsyncPolicy.NONE) {
+            publishDurable(writtenSequence);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (batchBuffer.position() == 0) {
+            return;
+        }
+        batchBuffer.flip();
+        int bytes = batchBuffer.remaining();
+        while (batchBuffer.hasRemaining()) {
+            channel.write(batchBuffer);
+        }
+        batchBuffer.clear();
+        segmentSize += bytes;
+        BYTES_WRITTEN.add(bytes);
+    }
+
+    private void force() throws IOException {
+        long start = System.nanoTime();
+        channel.force(false);
+        lastForce = System.nanoTime();
+        FSYNC_NANOS.record(lastForce - start);
+        publishDurable(writtenSequence);
+    }
+
+    private void startSegment(long firstSequence) throws IOException {
+        if (channel != null) {
+            if (fsync != FsyncPolicy.NONE) {
+                channel.force(false);
+            }
+            channel.close();
+        }
+        segment = JournalReader.segmentPath(directory, firstSequence);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentSize = 0;
+        SEGMENTS.increment();
+        LOGGER.fine("Started journal segment " + segment);
+    }
+
+    private static final class PendingRecord {
+        private final long sequence;
+        private final long timestamp;
+        private final byte[] payload;
+        private final String command;
+        private final List<String[]> keyValuePairs;
+        private Path segment;   // where the writer put it
+        private long offset;
+
+        PendingRecord(long sequence, long timestamp, byte[] payload, String command, List<String[]> keyValuePairs) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.payload = payload;
+            this.command = command;
+            this.keyValuePairs = keyValuePairs;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.konami.gaming.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Logging handler that hands records to a background thread through a
+ * bounded ring buffer. The target handler (console, file, ...) and its
+ * synchronized formatting and I/O run on that single thread, so logging
+ * threads only claim a slot with one CAS and never block each other.
+ * When the ring is full, records are dropped and counted rather than making
+ * the caller wait; the drain thread reports the number dropped.
+ *
+ * <p>Usually installed with {@link #installIfEnabled()}, which wraps the root
+ * logger's handlers. It can also be named in a logging.properties file
+ * ({@code handlers=com.konami.gaming.logging.AsyncLogHandler}), with optional
+ * {@code .capacity} and {@code .target} (handler class) properties.
+ */
+public class AsyncLogHandler extends Handler {
+
+    public static final String PROP_ASYNC = "konami.log.async";
+    public static final String PROP_CAPACITY = "konami.log.bufferSize";
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FLUSH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Handler target;
+    private final AtomicReferenceArray<LogRecord> ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next slot to claim
+    private volatile long head;                       // next slot to drain; written by the drain thread only
+    private final LongAdder dropped = new LongAdder();
+    private long droppedReported;
+    private final Thread drainThread;
+    private volatile boolean drainParked;             // drain thread is (about to be) parked on an empty ring
+    private volatile boolean closed;
+
+    /**
+     * Constructor used by {@link LogManager} configuration.
+     */
+    public AsyncLogHandler() {
+        this(configuredTarget(), configuredCapacity());
+    }
+
+    /**
+     * @param target Handler that does the actual formatting and output
+     * @param capacity Records buffered before new ones are dropped; rounded up to a power of two
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        this.target = target;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        setLevel(target.getLevel());
+        this.drainThread = new Thread(this::drain, "Async-Log-Handler");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Wrap each handler of the root logger in an AsyncLogHandler unless
+     * -Dkonami.log.async=false. Safe to call more than once.
+     */
+    public static void installIfEnabled() {
+        if (!Boolean.parseBoolean(System.getProperty(PROP_ASYNC, "true"))) {
+            return;
+        }
+        int capacity = Integer.getInteger(PROP_CAPACITY, DEFAULT_CAPACITY);
+        Logger root = Logger.getLogger("");
+        synchronized (AsyncLogHandler.class) {
+            for (Handler handler : root.getHandlers()) {
+                if (handler instanceof AsyncLogHandler) {
+                    continue;
+                }
+                root.removeHandler(handler);
+                root.addHandler(new AsyncLogHandler(handler, capacity));
+            }
+        }
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        // Source class/method are inferred lazily from the current stack; do it
+        // here, as on the drain thread the stack belongs to the wrong thread
+        record.getSourceClassName();
+
+        long slot;
+        do {
+            slot = tail.get();
+            if (slot - head >= ring.length()) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(slot, slot + 1));
+        ring.set((int) slot & mask, record);
+        // Wake the drain thread only when it has gone to sleep on an empty ring
+        if (drainParked) {
+            LockSupport.unpark(drainThread);
+        }
+    }
+
+    /**
+     * Wait (up to a second) for buffered records to reach the target, then flush it.
+     */
+    @Override
+    public void flush() {
+        long deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+        long claimed = tail.get();
+        while (head < claimed && drainThread.isAlive() && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        target.flush();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join(TimeUnit.NANOSECONDS.toMillis(FLUSH_TIMEOUT_NANOS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    /** Records dropped so far because the ring was full. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void drain() {
+        boolean unflushed = false;
+        while (true) {
+            long position = head;
+            int index = (int) position & mask;
+            LogRecord record = ring.get(index);
+            if (record == null) {
+                if (position != tail.get()) {
+                    // A producer has claimed the slot but not stored it yet
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                // Empty: one flush per burst instead of per record
+                if (unflushed) {
+                    reportDropped();
+                    target.flush();
+                    unflushed = false;
+                }
+                if (closed) {
+                    return;
+                }
+                // Publish the flag before re-checking, so a producer either sees it or we see its slot
+                drainParked = true;
+                if (position == tail.get() && !closed) {
+                    LockSupport.park(this);
+                }
+                drainParked = false;
+                continue;
+            }
+            ring.set(index, null);
+            head = position + 1;
+            unflushed = true;
+            try {
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError("Async log target failed", e, 0);
+            }
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total > droppedReported) {
+            LogRecord warning = new LogRecord(Level.WARNING,
+                    (total - droppedReported) + " log records dropped, logging buffer full");
+            warning.setLoggerName(AsyncLogHandler.class.getName());
+            target.publish(warning);
+            droppedReported = total;
+        }
+    }
+
+    private static Handler configuredTarget() {
+        String className = LogManager.getLogManager().getProperty(AsyncLogHandler.class.getName() + ".target");
+        if (className == null) {
+            return new ConsoleHandler();
+        }
+        try {
+            return (Handler) Class.forName(className.trim(), true, ClassLoader.getSystemClassLoader())
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid async log target: " + className, e);
+        }
+    }
+
+    private static int configuredCapacity() {
+        String value = LogManager.getLogManager().getProperty(AsyncLogHandler.class.getName() + ".capacity");
+        if (value == null) {
+            return Integer.getInteger(PROP_CAPACITY, DEFAULT_CAPACITY);
+        }
+        return Integer.parseInt(value.trim());
+    }
+}
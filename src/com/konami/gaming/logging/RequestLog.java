@@ -0,0 +1,101 @@
+package com.konami.gaming.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Aggregated logging for per-request events. Instead of a log line per
+ * event, {@link #record()} bumps a counter, and the first event after each
+ * interval logs one INFO summary such as
+ * {@code "5234 messages processed (2 errors) in the last 10.0s"}.
+ * Details of individual events can still be logged for a random sample:
+ * <pre>
+ *   if (REQUEST_LOG.sample()) LOGGER.fine("Processed message " + id);
+ * </pre>
+ */
+public class RequestLog {
+
+    public static final String PROP_SUMMARY_INTERVAL = "konami.log.summaryIntervalMs";
+    public static final String PROP_SAMPLE_EVERY = "konami.log.sampleEvery";
+
+    private static final long DEFAULT_SUMMARY_INTERVAL_MS = 10_000;
+    private static final int DEFAULT_SAMPLE_EVERY = 1000;
+
+    private final Logger logger;
+    private final String event;
+    private final long intervalNanos;
+    private final int sampleEvery;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong nextSummary;
+    private long lastSummary = System.nanoTime();
+    private long lastCount;
+    private long lastErrors;
+
+    /**
+     * @param logger Logger the summaries go to
+     * @param event Plural description of the event, e.g. "messages processed"
+     */
+    public RequestLog(Logger logger, String event) {
+        this(logger, event, Long.getLong(PROP_SUMMARY_INTERVAL, DEFAULT_SUMMARY_INTERVAL_MS),
+                Integer.getInteger(PROP_SAMPLE_EVERY, DEFAULT_SAMPLE_EVERY));
+    }
+
+    /**
+     * @param intervalMillis Minimum time between summaries
+     * @param sampleEvery One in this many events is sampled; 1 samples all, 0 none
+     */
+    public RequestLog(Logger logger, String event, long intervalMillis, int sampleEvery) {
+        this.logger = logger;
+        this.event = event;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalMillis));
+        this.sampleEvery = Math.max(0, sampleEvery);
+        this.nextSummary = new AtomicLong(lastSummary + intervalNanos);
+    }
+
+    public void record() {
+        count.increment();
+        maybeLogSummary();
+    }
+
+    /** Record an event that failed; it is counted in the total as well. */
+    public void recordError() {
+        errors.increment();
+        record();
+    }
+
+    /**
+     * True for a random one in {@code sampleEvery} calls while FINE logging
+     * is enabled, so callers only build detail messages for the sample.
+     */
+    public boolean sample() {
+        return sampleEvery > 0 && logger.isLoggable(Level.FINE)
+                && (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0);
+    }
+
+    private void maybeLogSummary() {
+        long now = System.nanoTime();
+        long next = nextSummary.get();
+        // One thread wins the CAS and logs; the rest return straight away
+        if (now - next < 0 || !nextSummary.compareAndSet(next, now + intervalNanos)) {
+            return;
+        }
+        synchronized (this) {
+            long total = count.sum();
+            long totalErrors = errors.sum();
+            long elapsed = now - lastSummary;
+            if (logger.isLoggable(Level.INFO)) {
+                // Attributed to the owning logger rather than to this class
+                logger.logp(Level.INFO, logger.getName(), "summary", String.format("%d %s (%d errors) in the last %.1fs",
+                        total - lastCount, event, totalErrors - lastErrors, elapsed / 1e9));
+            }
+            lastSummary = now;
+            lastCount = total;
+            lastErrors = totalErrors;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.konami.gaming.metrics;
+
+/**
+ * Point-in-time value read when metrics are collected, e.g. a queue depth.
+ */
+@FunctionalInterface
+public interface Gauge {
+
+    long value();
+}
@@ -0,0 +1,29 @@
+package com.konami.gaming.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counter that also reports its rate per second. Marking is as cheap as a
+ * {@link Counter}; the rate is worked out on the read side, over the time since
+ * the previous read (at least one second).
+ */
+public class Meter extends Counter {
+
+    private static final long MIN_RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private long lastCount;
+    private long lastTime = System.nanoTime();
+    private double rate;
+
+    public synchronized double getRate() {
+        long now = System.nanoTime();
+        long elapsed = now - lastTime;
+        if (elapsed >= MIN_RATE_INTERVAL_NANOS) {
+            long count = get();
+            rate = (count - lastCount) * 1e9 / elapsed;
+            lastCount = count;
+            lastTime = now;
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,102 @@
+package com.konami.gaming.metrics;
+
+import com.konami.gaming.common.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named counters, meters, gauges and latency histograms. Callers look a
+ * metric up once and keep the reference, so recording never touches the
+ * registry; every metric type records without locks. {@link #snapshot()}
+ * flattens everything to numbers for the JMX and plaintext exporters.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Process-wide registry used by the server engines.
+     */
+    public static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    public Counter counter(String name) {
+        return register(name, Counter.class, new Counter());
+    }
+
+    public Meter meter(String name) {
+        return register(name, Meter.class, new Meter());
+    }
+
+    /**
+     * Histogram of durations in nanoseconds.
+     */
+    public LatencyHistogram histogram(String name) {
+        return register(name, LatencyHistogram.class, new LatencyHistogram());
+    }
+
+    /**
+     * Register (or replace) a gauge, e.g. when a new engine instance starts.
+     */
+    public void gauge(String name, Gauge gauge) {
+        metrics.put(name, gauge);
+    }
+
+    /**
+     * Current value of every metric, by name in sorted order. Meters add
+     * {@code name_rate}; histograms expand to count, mean, percentiles and max.
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof Meter) {
+                values.put(name, ((Meter) metric).get());
+                values.put(name + "_rate", ((Meter) metric).getRate());
+            } else if (metric instanceof Counter) {
+                values.put(name, ((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                values.put(name, ((Gauge) metric).value());
+            } else if (metric instanceof LatencyHistogram) {
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                values.put(name + "_count", histogram.getCount());
+                values.put(name + "_mean", histogram.getMean());
+                values.put(name + "_p50", histogram.getValueAtPercentile(50));
+                values.put(name + "_p99", histogram.getValueAtPercentile(99));
+                values.put(name + "_p999", histogram.getValueAtPercentile(99.9));
+                values.put(name + "_max", histogram.getMax());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Plaintext exposition, one {@code name value} line per entry of {@link #snapshot()}.
+     */
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Number> entry : snapshot().entrySet()) {
+            sb.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private <T> T register(String name, Class<T> type, T metric) {
+        Object existing = metrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as "
+                    + existing.getClass().getSimpleName());
+        }
+        return type.cast(existing);
+    }
+}
@@ -0,0 +1,171 @@
+package com.konami.gaming.server;
+
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.logging.RequestLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Admission control shared by the server engines. Connections beyond
+ * {@link ServerConfig#getMaxConnections()} are answered with BUSY and closed
+ * straight away, so clients can back off instead of waiting for a timeout.
+ * When received-but-unprocessed bytes or the handler queue pass a high-water
+ * mark, the engine stops accepting; pending connections wait in the kernel
+ * backlog until load drops below the low-water mark.
+ */
+public class AdmissionController {
+
+    private static final Logger LOGGER = Logger.getLogger(AdmissionController.class.getName());
+    private static final RequestLog BUSY_LOG = new RequestLog(LOGGER, "clients rejected as busy");
+
+    /** How long an engine waits before re-checking a paused accept loop. */
+    static final long ACCEPT_PAUSE_MILLIS = 10;
+
+    private static final int HIGH_WATER_PERCENT = 80;
+    private static final int LOW_WATER_PERCENT = 50;
+
+    // Reply sent before the client has negotiated framing, so END-marker framed
+    private static final byte[] BUSY_REPLY = MessageFramer.encode(MessageFramer.Mode.END_MARKER,
+            NetworkConstants.BUSY_MESSAGE);
+
+    private final int maxConnections;
+    private final long inFlightHighWater;
+    private final long inFlightLowWater;
+    private final IntSupplier queuedWork;
+    private final int queueHighWater;
+    private final int queueLowWater;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicBoolean acceptPaused = new AtomicBoolean();
+
+    /**
+     * Admission control for an engine without a work queue.
+     */
+    public AdmissionController(ServerConfig config) {
+        this(config, () -> 0, 0);
+    }
+
+    /**
+     * @param queuedWork Current number of accepted clients waiting for a handler
+     * @param queueCapacity Size of that queue; 0 disables the queue high-water mark
+     */
+    public AdmissionController(ServerConfig config, IntSupplier queuedWork, int queueCapacity) {
+        this.maxConnections = config.getMaxConnections();
+        this.inFlightHighWater = config.getMaxInFlightBytes() * HIGH_WATER_PERCENT / 100;
+        this.inFlightLowWater = config.getMaxInFlightBytes() * LOW_WATER_PERCENT / 100;
+        this.queuedWork = queuedWork;
+        this.queueHighWater = queueCapacity * HIGH_WATER_PERCENT / 100;
+        this.queueLowWater = queueCapacity * LOW_WATER_PERCENT / 100;
+        ServerMetrics.gauge("konami_server_in_flight_bytes", inFlightBytes::get);
+        ServerMetrics.gauge("konami_server_accept_paused", () -> acceptPaused.get() ? 1 : 0);
+    }
+
+    /**
+     * Reserve a connection slot for a newly accepted client.
+     * @return false if the server is at its connection limit; reject the client with {@link #rejectBusy}
+     */
+    public boolean tryAdmit() {
+        while (true) {
+            int current = connections.get();
+            if (maxConnections > 0 && current >= maxConnections) {
+                return false;
+            }
+            if (connections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give back a connection slot, along with the bytes it still had in flight.
+     */
+    public void release(int inFlight) {
+        connections.decrementAndGet();
+        inFlightBytes.addAndGet(-inFlight);
+    }
+
+    /**
+     * Account for a change in a connection's buffered bytes.
+     * @param previous Bytes last reported for the connection
+     * @param current Bytes it has buffered now
+     * @return {@code current}, to pass as {@code previous} next time
+     */
+    public int updateInFlight(int previous, int current) {
+        if (current != previous) {
+            inFlightBytes.addAndGet(current - previous);
+        }
+        return current;
+    }
+
+    /**
+     * Check whether the accept loop should hold off. Pauses once in-flight
+     * bytes or queued work reach the high-water mark and resumes only when
+     * both are back under the low-water mark. Safe to call from several
+     * acceptor threads; only one of them logs each transition.
+     */
+    public boolean shouldPauseAccept() {
+        long bytes = inFlightBytes.get();
+        int queued = queuedWork.getAsInt();
+        if (!acceptPaused.get()) {
+            if (((inFlightHighWater > 0 && bytes >= inFlightHighWater)
+                    || (queueHighWater > 0 && queued >= queueHighWater))
+                    && acceptPaused.compareAndSet(false, true)) {
+                ServerMetrics.ACCEPT_PAUSES.increment();
+                LOGGER.warning("Server overloaded, pausing accepts: inFlightBytes=" + bytes + ", queuedClients=" + queued);
+            }
+        } else if ((inFlightHighWater == 0 || bytes <= inFlightLowWater)
+                && (queueHighWater == 0 || queued <= queueLowWater)
+                && acceptPaused.compareAndSet(true, false)) {
+            LOGGER.info("Load back under low-water mark, resuming accepts");
+        }
+        return acceptPaused.get();
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    /**
+     * Answer a client that cannot be served with BUSY + END and close it.
+     * The reply fits in the socket send buffer, so this does not block.
+     */
+    static void rejectBusy(Socket clientSocket) {
+        countRejection();
+        try (Socket socket = clientSocket) {
+            OutputStream out = socket.getOutputStream();
+            out.write(BUSY_REPLY);
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error rejecting client", e);
+        }
+    }
+
+    static void rejectBusy(SocketChannel channel) {
+        countRejection();
+        try (SocketChannel client = channel) {
+            client.write(ByteBuffer.wrap(BUSY_REPLY));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error rejecting client", e);
+        }
+    }
+
+    private static void countRejection() {
+        ServerMetrics.CONNECTIONS_REJECTED.increment();
+        BUSY_LOG.record();
+    }
+}
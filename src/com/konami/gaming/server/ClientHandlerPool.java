@@ -0,0 +1,175 @@
+package com.konami.gaming.server;
+
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Bounded executor for client handlers. Uses a fixed pool of platform threads
+ * with a bounded queue, or one virtual thread per client (JDK 21+) capped by a
+ * permit count. Clients that cannot be admitted get BUSY_MESSAGE + END and are closed.
+ */
+public class ClientHandlerPool {
+
+    private static final Logger LOGGER = Logger.getLogger(ClientHandlerPool.class.getName());
+
+    private final ExecutorService executor;
+    private final Semaphore virtualPermits;
+    private final int workerThreads;
+    private final int virtualCapacity;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ClientHandlerPool(ServerConfig config) {
+        workerThreads = config.getWorkerThreads();
+        ExecutorService virtualExecutor = config.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            executor = virtualExecutor;
+            virtualCapacity = config.getWorkerThreads() + config.getWorkerQueueDepth();
+            virtualPermits = new Semaphore(virtualCapacity);
+            ServerMetrics.gauge("konami_server_handlers_active", () -> virtualCapacity - virtualPermits.availablePermits());
+            LOGGER.info("Client handlers use virtual threads, max concurrent: " + virtualCapacity);
+        } else {
+            BlockingQueue<Runnable> queue = config.getWorkerQueueDepth() > 0
+                    ? new ArrayBlockingQueue<>(config.getWorkerQueueDepth())
+                    : new SynchronousQueue<>();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    config.getWorkerThreads(), config.getWorkerThreads(),
+                    60L, TimeUnit.SECONDS, queue,
+                    new HandlerThreadFactory(), new RejectAndNotify());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+            virtualPermits = null;
+            virtualCapacity = 0;
+            ServerMetrics.gauge("konami_server_handlers_active", pool::getActiveCount);
+            ServerMetrics.gauge("konami_server_handler_queue_depth", () -> queue.size());
+            LOGGER.info("Client handler pool: threads=" + config.getWorkerThreads()
+                    + ", queueDepth=" + config.getWorkerQueueDepth());
+        }
+    }
+
+    /**
+     * Run the handler for the given socket on a worker, or reject the client
+     * if the pool is saturated.
+     * @return false if the client was rejected and its socket closed
+     */
+    public boolean submit(Socket clientSocket, Consumer<Socket> handler) {
+        ClientTask task = new ClientTask(clientSocket, handler);
+        if (virtualPermits != null) {
+            if (!virtualPermits.tryAcquire()) {
+                rejectClient(clientSocket);
+                return false;
+            }
+            task.releaseOnCompletion = true;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Executor is shutting down; the platform pool rejects through RejectAndNotify instead
+            if (task.releaseOnCompletion) virtualPermits.release();
+            rejectClient(clientSocket);
+            return false;
+        }
+        return !task.rejected;
+    }
+
+    /**
+     * True when accepted clients are waiting for a free platform worker. Keep-alive
+     * sessions use this to give their thread back instead of pinning it while idle.
+     */
+    public boolean hasWaitingClients() {
+        return executor instanceof ThreadPoolExecutor && !((ThreadPoolExecutor) executor).getQueue().isEmpty();
+    }
+
+    /**
+     * Accepted clients waiting for a handler. With virtual threads, the clients
+     * beyond what the configured worker count would be running.
+     */
+    public int getQueuedCount() {
+        if (virtualPermits != null) {
+            int inUse = virtualCapacity - virtualPermits.availablePermits();
+            return Math.max(0, inUse - workerThreads);
+        }
+        return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void rejectClient(Socket clientSocket) {
+        rejectedCount.incrementAndGet();
+        AdmissionController.rejectBusy(clientSocket);
+    }
+
+    /**
+     * Look up Executors.newVirtualThreadPerTaskExecutor reflectively so the
+     * build stays on the Java 11 baseline.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warning("Virtual threads not supported by this JDK, using platform thread pool");
+            return null;
+        }
+    }
+
+    private final class ClientTask implements Runnable {
+        private final Socket clientSocket;
+        private final Consumer<Socket> handler;
+        private boolean releaseOnCompletion;
+        private boolean rejected;
+
+        ClientTask(Socket clientSocket, Consumer<Socket> handler) {
+            this.clientSocket = clientSocket;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                handler.accept(clientSocket);
+            } finally {
+                if (releaseOnCompletion) virtualPermits.release();
+            }
+        }
+    }
+
+    private final class RejectAndNotify implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+            ClientTask clientTask = (ClientTask) task;
+            clientTask.rejected = true;
+            rejectClient(clientTask.clientSocket);
+        }
+    }
+
+    private static final class HandlerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "Server-Client-Handler-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
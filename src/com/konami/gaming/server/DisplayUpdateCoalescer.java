@@ -0,0 +1,93 @@
+package com.konami.gaming.server;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Latest-wins hand-off from socket handler threads to the FX thread.
+ * Handlers only swap a reference and never block on the UI; an
+ * {@link AnimationTimer} renders the newest pending state at most once per
+ * frame (or at the configured max rate). Updates replaced before they were
+ * rendered are counted as dropped.
+ */
+public class DisplayUpdateCoalescer {
+
+    private final AtomicReference<Update> pending = new AtomicReference<>();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong renderedCount = new AtomicLong();
+    private final long minIntervalNanos;
+    private final AnimationTimer timer;
+    private long lastRender;
+
+    /**
+     * @param maxUpdatesPerSecond Render limit; 0 renders on every frame that has a pending update
+     * @param renderer Called on the FX thread with the command and pairs to show
+     */
+    public DisplayUpdateCoalescer(int maxUpdatesPerSecond, BiConsumer<String, List<String[]>> renderer) {
+        this.minIntervalNanos = maxUpdatesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxUpdatesPerSecond : 0;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (pending.get() == null || now - lastRender < minIntervalNanos) {
+                    return;
+                }
+                Update update = pending.getAndSet(null);
+                if (update != null) {
+                    lastRender = now;
+                    renderedCount.incrementAndGet();
+                    renderer.accept(update.command, update.keyValuePairs);
+                }
+            }
+        };
+    }
+
+    /**
+     * Queue a state to display, replacing any state not yet rendered. Safe to
+     * call from any thread.
+     */
+    public void submit(String command, List<String[]> keyValuePairs) {
+        submittedCount.incrementAndGet();
+        if (pending.getAndSet(new Update(command, keyValuePairs)) != null) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /** Must be called on the FX thread. */
+    public void start() {
+        timer.start();
+    }
+
+    /** Must be called on the FX thread. */
+    public void stop() {
+        timer.stop();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /** Updates superseded by a newer one before they reached the screen. */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getRenderedCount() {
+        return renderedCount.get();
+    }
+
+    private static final class Update {
+        private final String command;
+        private final List<String[]> keyValuePairs;
+
+        Update(String command, List<String[]> keyValuePairs) {
+            this.command = command;
+            this.keyValuePairs = keyValuePairs;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.konami.gaming.server;
 import com.konami.gaming.common.NetworkConstants;
 
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -12,14 +14,16 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 /**
- * JavaFX GUI Server - displays received key-value data in dynamic cards.
+ * JavaFX GUI Server - displays received key-value data as cards in a
+ * virtualized list, so only the visible rows have nodes.
  */
-public class GUIServer {
+public class GUIServer implements MessageSink {
 
     private static final Logger LOGGER = Logger.getLogger(GUIServer.class.getName());
 
@@ -28,10 +32,12 @@ public class GUIServer {
     private final Button stopButton;
     private final TextField ipField;
     private final TextField portField;
-    private final VBox dataCardsBox;
+    private final ObservableList<String[]> dataCards = FXCollections.observableArrayList();
+    private final Label updateStatsLabel;
+    private final DisplayUpdateCoalescer displayUpdates;
     private int serverPortNumber;
     private volatile boolean isServerRunning = false;
-    private SocketListener serverConnection;
+    private ServerEngine serverConnection;
 
     public GUIServer(String title) {
         stage = new Stage();
@@ -78,32 +84,38 @@ public class GUIServer {
         spacer.setPrefHeight(28);
         spacer.getStyleClass().add("toolbar-spacer");
 
+        updateStatsLabel = new Label();
+        updateStatsLabel.getStyleClass().add("toolbar-label");
+
         toolbar.getChildren().addAll(
             startButton,
             stopButton,
             spacer,
             ipLbl, ipField,
-            portLbl, portField
+            portLbl, portField,
+            updateStatsLabel
         );
 
-        dataCardsBox = new VBox(12);
-        dataCardsBox.setPadding(new Insets(20));
-        dataCardsBox.getStyleClass().add("data-cards-box");
-        ScrollPane scroll = new ScrollPane(dataCardsBox);
-        scroll.setFitToWidth(true);
-        scroll.getStyleClass().add("scroll-pane");
-        scroll.setPadding(new Insets(0));
+        // Cells are reused while scrolling, so node count tracks the viewport, not the payload
+        ListView<String[]> dataCardsList = new ListView<>(dataCards);
+        dataCardsList.getStyleClass().add("data-cards-list");
+        dataCardsList.setFocusTraversable(false);
+        dataCardsList.setCellFactory(list -> new DataCardCell());
 
         VBox root = new VBox(0);
         root.getStyleClass().add("root");
-        root.getChildren().addAll(toolbar, scroll);
-        VBox.setVgrow(scroll, Priority.ALWAYS);
+        root.getChildren().addAll(toolbar, dataCardsList);
+        VBox.setVgrow(dataCardsList, Priority.ALWAYS);
 
         javafx.scene.Scene scene = new javafx.scene.Scene(root);
         String css = getClass().getResource("server-styles.css").toExternalForm();
         scene.getStylesheets().add(css);
         stage.setScene(scene);
         stage.setOnCloseRequest(ev -> System.exit(0));
+
+        // Handler threads hand over the latest state; the FX thread renders it once per frame
+        displayUpdates = new DisplayUpdateCoalescer(ServerConfig.fromSystemProperties().getUiMaxFps(), this::renderDisplay);
+        displayUpdates.start();
     }
 
     public void initialize() {
@@ -125,39 +137,78 @@ public class GUIServer {
         }
     }
 
+    @Override
+    public void onMessage(String messageId, String command, List<String[]> keyValuePairs) {
+        updateDisplay(command, keyValuePairs);
+    }
+
+    @Override
+    public void onError(Exception e) {
+        clearGridDisplay();
+    }
+
+    /**
+     * Show a processed message. Returns immediately; if several messages arrive
+     * within one frame only the latest is rendered.
+     */
     public void updateDisplay(String command, List<String[]> keyValuePairs) {
-        Platform.runLater(() -> {
-            dataCardsBox.getChildren().clear();
+        displayUpdates.submit(command, keyValuePairs);
+    }
 
-            if (command != null && !command.isEmpty()) {
-                dataCardsBox.getChildren().add(createCard("Command", command));
-            }
-            if (keyValuePairs != null) {
-                for (String[] pair : keyValuePairs) {
-                    String key = pair.length > 0 ? pair[0] : "";
-                    String val = pair.length > 1 ? pair[1] : "";
-                    if (!key.isEmpty() || !val.isEmpty()) {
-                        dataCardsBox.getChildren().add(createCard(key.isEmpty() ? "Key" : key, val));
-                    }
+    private void renderDisplay(String command, List<String[]> keyValuePairs) {
+        List<String[]> cards = new ArrayList<>(keyValuePairs == null ? 1 : keyValuePairs.size() + 1);
+
+        if (command != null && !command.isEmpty()) {
+            cards.add(new String[]{"Command", command});
+        }
+        if (keyValuePairs != null) {
+            for (String[] pair : keyValuePairs) {
+                String key = pair.length > 0 ? pair[0] : "";
+                String val = pair.length > 1 ? pair[1] : "";
+                if (!key.isEmpty() || !val.isEmpty()) {
+                    cards.add(new String[]{key.isEmpty() ? "Key" : key, val});
                 }
             }
-        });
+        }
+        // One change event for the whole message
+        dataCards.setAll(cards);
+        updateStatsLabel.setText("Shown " + displayUpdates.getRenderedCount()
+                + " / skipped " + displayUpdates.getDroppedCount());
     }
 
-    private VBox createCard(String label, String value) {
-        VBox card = new VBox(6);
-        card.setPadding(new Insets(16, 20, 16, 20));
-        card.getStyleClass().add("data-card");
-        Label labelLbl = new Label(label.toUpperCase());
-        labelLbl.getStyleClass().add("data-card-label");
-        Label valueLbl = new Label(value);
-        valueLbl.getStyleClass().add("data-card-value");
-        card.getChildren().addAll(labelLbl, valueLbl);
-        return card;
+    /**
+     * List cell that builds its card once and only swaps the text when reused.
+     */
+    private static final class DataCardCell extends ListCell<String[]> {
+        private final VBox card = new VBox(6);
+        private final Label labelLbl = new Label();
+        private final Label valueLbl = new Label();
+
+        DataCardCell() {
+            card.setPadding(new Insets(16, 20, 16, 20));
+            card.getStyleClass().add("data-card");
+            labelLbl.getStyleClass().add("data-card-label");
+            valueLbl.getStyleClass().add("data-card-value");
+            card.getChildren().addAll(labelLbl, valueLbl);
+            getStyleClass().add("data-card-cell");
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(String[] item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setGraphic(null);
+            } else {
+                labelLbl.setText(item[0].toUpperCase());
+                valueLbl.setText(item[1]);
+                setGraphic(card);
+            }
+        }
     }
 
     public void clearGridDisplay() {
-        Platform.runLater(() -> dataCardsBox.getChildren().clear());
+        displayUpdates.submit(null, null);
     }
 
     private boolean validatePortInput() {
@@ -184,9 +235,11 @@ public class GUIServer {
             startButton.setDisable(true);
             stopButton.setDisable(false);
             isServerRunning = true;
-            serverConnection = new SocketListener(this);
+            ServerConfig config = ServerConfig.fromSystemProperties();
+            config.setPort(serverPortNumber);
+            serverConnection = ServerEngine.create(this, config);
             new Thread(serverConnection, "Server-Socket-Thread").start();
-            LOGGER.info("Server started on port " + serverPortNumber);
+            LOGGER.info("Server started on port(s) " + config.getPorts());
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error starting server", e);
             showError("Failed to start: " + e.getMessage());
@@ -0,0 +1,54 @@
+package com.konami.gaming.server;
+
+import com.konami.gaming.logging.AsyncLogHandler;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Server entry point for machines without a display. Runs the configured
+ * engine with a {@link LoggingMessageSink} and never touches JavaFX.
+ *
+ * <pre>
+ *   java -cp target/classes com.konami.gaming.server.HeadlessServer [port]
+ * </pre>
+ * The port can also be set with -Dkonami.server.port; the other
+ * -Dkonami.server.* properties apply as for the GUI server.
+ */
+public class HeadlessServer {
+
+    private static final Logger LOGGER = Logger.getLogger(HeadlessServer.class.getName());
+
+    public static void main(String[] args) {
+        AsyncLogHandler.installIfEnabled();
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        if (args.length > 0) {
+            try {
+                config.setPort(Integer.parseInt(args[0].trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port number: " + args[0]);
+                System.exit(1);
+            }
+        }
+
+        LoggingMessageSink sink = new LoggingMessageSink();
+        ServerEngine engine = ServerEngine.create(sink, config);
+        Thread serverThread = new Thread(engine, "Server-Socket-Thread");
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                engine.close();
+                serverThread.join(2000);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error stopping server", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            LOGGER.info("Headless server stopped after " + sink.getMessageCount() + " messages");
+        }, "Server-Shutdown"));
+
+        LOGGER.info("Starting headless " + config.getEngine() + " server on port " + config.getPort());
+        serverThread.start();
+    }
+}
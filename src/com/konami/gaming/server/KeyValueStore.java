@@ -0,0 +1,229 @@
+package com.konami.gaming.server;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live key to latest-value state, merged from the pairs of every message the
+ * server processes, with a version counter per key (1 on first write, +1 on
+ * every update). Keys are never removed.
+ *
+ * <p>Built for millions of keys with many writing handler threads:
+ * <ul>
+ *   <li>Entries live in open-addressing tables of parallel key, value and
+ *       version arrays, so there is no node or tuple object per entry.</li>
+ *   <li>Each key string is stored once: the instance seen first is kept and
+ *       later messages' copies of it are garbage straight away.
+ *       {@link #canonicalKey(String)} hands out the stored instance.</li>
+ *   <li>Writers lock one of {@value #SEGMENTS} segments; readers never lock.
+ *       A writer marks a slot's version odd while it swaps the value, so
+ *       {@link #forEach} can retry and always report a value with its own
+ *       version.</li>
+ * </ul>
+ */
+public class KeyValueStore {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    /** Receives entries from {@link #forEach}. */
+    public interface EntryVisitor {
+        void visit(String key, String value, long version);
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder updates = new LongAdder();
+
+    public KeyValueStore() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Set a key's value.
+     * @return the key's new version
+     */
+    public long put(String key, String value) {
+        int hash = spread(key.hashCode());
+        long version = segmentFor(hash).put(key, hash, value);
+        updates.increment();
+        return version;
+    }
+
+    /**
+     * Apply a message's {key, value} pairs in order.
+     */
+    public void merge(List<String[]> keyValuePairs) {
+        for (String[] pair : keyValuePairs) {
+            put(pair[0], pair[1]);
+        }
+    }
+
+    /** Latest value of a key, or null if it was never set. Lock-free. */
+    public String get(String key) {
+        Table table = tableFor(key);
+        int slot = table.find(key, spread(key.hashCode()));
+        return slot < 0 ? null : table.values.get(slot);
+    }
+
+    /** Number of times a key has been set; 0 if never. Lock-free. */
+    public long getVersion(String key) {
+        Table table = tableFor(key);
+        int slot = table.find(key, spread(key.hashCode()));
+        return slot < 0 ? 0 : table.versions.get(slot) >>> 1;
+    }
+
+    /**
+     * The stored instance of a key equal to {@code key}, or {@code key}
+     * itself if the store does not have it.
+     */
+    public String canonicalKey(String key) {
+        Table table = tableFor(key);
+        int slot = table.find(key, spread(key.hashCode()));
+        return slot < 0 ? key : table.keys.get(slot);
+    }
+
+    /**
+     * Visit every entry without locking. Each value is seen with its own
+     * version; entries written during the walk may or may not be included.
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            for (int slot = 0; slot <= table.mask; slot++) {
+                String key = table.keys.get(slot);
+                if (key == null) {
+                    continue;
+                }
+                while (true) {
+                    long before = table.versions.get(slot);
+                    String value = table.values.get(slot);
+                    if ((before & 1) == 0 && table.versions.get(slot) == before) {
+                        visitor.visit(key, value, before >>> 1);
+                        break;
+                    }
+                    // The writer may have been descheduled mid-update; let it finish
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    /** Number of distinct keys. */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /** Total number of puts, across all keys. */
+    public long getUpdateCount() {
+        return updates.sum();
+    }
+
+    private Table tableFor(String key) {
+        return segmentFor(spread(key.hashCode())).table;
+    }
+
+    private Segment segmentFor(int hash) {
+        // Top bits pick the segment; the table uses the low bits
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static int spread(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16); // mixes the low bits, leaves the segment bits alone
+    }
+
+    /**
+     * One stripe of the store. Writes and resizes hold its monitor; the table
+     * is replaced, never changed in size, so readers can use whichever table
+     * they loaded.
+     */
+    private static final class Segment {
+        private volatile Table table = new Table(INITIAL_SEGMENT_CAPACITY);
+        private volatile int size;
+
+        synchronized long put(String key, int hash, String value) {
+            Table current = table;
+            int slot = current.find(key, hash);
+            if (slot >= 0) {
+                long version = current.versions.get(slot);
+                current.versions.set(slot, version + 1); // odd: readers wait
+                current.values.set(slot, value);
+                current.versions.set(slot, version + 2);
+                return (version + 2) >>> 1;
+            }
+            // Keep the load factor at or below 3/4 so probes stay short
+            if ((size + 1) * 4L > (current.mask + 1) * 3L) {
+                current = current.resize();
+                table = current;
+            }
+            slot = current.freeSlot(hash);
+            current.values.set(slot, value);
+            current.versions.set(slot, 2);
+            current.keys.set(slot, key); // publishes the entry
+            size = size + 1;
+            return 1;
+        }
+    }
+
+    /**
+     * Open-addressing table with linear probing. A slot's version holds twice
+     * the key's version, plus one while a write is in progress.
+     */
+    private static final class Table {
+        private final AtomicReferenceArray<String> keys;
+        private final AtomicReferenceArray<String> values;
+        private final AtomicLongArray versions;
+        private final int mask;
+
+        Table(int capacity) {
+            this.keys = new AtomicReferenceArray<>(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.versions = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        int find(String key, int hash) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                String stored = keys.get(slot);
+                if (stored == null) {
+                    return -1;
+                }
+                if (stored == key || stored.equals(key)) {
+                    return slot;
+                }
+            }
+        }
+
+        int freeSlot(int hash) {
+            int slot = hash & mask;
+            while (keys.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /** Copy into a table twice the size. Caller holds the segment lock. */
+        Table resize() {
+            Table bigger = new Table((mask + 1) * 2);
+            for (int slot = 0; slot <= mask; slot++) {
+                String key = keys.get(slot);
+                if (key != null) {
+                    int target = bigger.freeSlot(spread(key.hashCode()));
+                    bigger.values.set(target, values.get(slot));
+                    bigger.versions.set(target, versions.get(slot));
+                    bigger.keys.set(target, key);
+                }
+            }
+            return bigger;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.konami.gaming.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Opens the listening sockets for an engine's acceptor threads: one per
+ * acceptor, for each configured port. Where the OS supports SO_REUSEPORT,
+ * acceptors on the same port each bind their own socket and the kernel
+ * spreads new connections across them. Elsewhere they share one socket.
+ */
+final class ListenSockets {
+
+    private static final Logger LOGGER = Logger.getLogger(ListenSockets.class.getName());
+
+    private ListenSockets() {}
+
+    /**
+     * Blocking server sockets, one entry per acceptor thread (entries repeat
+     * when acceptors share a socket).
+     */
+    static List<ServerSocket> openServerSockets(ServerConfig config) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int port : config.getPorts()) {
+                ServerSocket shared = null;
+                for (int i = 0; i < config.getAcceptorsPerPort(); i++) {
+                    if (shared == null) {
+                        ServerSocket socket = new ServerSocket();
+                        sockets.add(socket);
+                        boolean reusePort = config.getAcceptorsPerPort() > 1
+                                && canReusePort(socket.supportedOptions(), port);
+                        if (reusePort) {
+                            socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                        }
+                        socket.bind(new InetSocketAddress(port));
+                        shared = reusePort ? null : socket;
+                    } else {
+                        sockets.add(shared);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            closeAll(sockets);
+            throw e;
+        }
+        return sockets;
+    }
+
+    /**
+     * Non-blocking server channels, one entry per acceptor thread (entries
+     * repeat when acceptors share a channel).
+     */
+    static List<ServerSocketChannel> openServerChannels(ServerConfig config) throws IOException {
+        List<ServerSocketChannel> channels = new ArrayList<>();
+        try {
+            for (int port : config.getPorts()) {
+                ServerSocketChannel shared = null;
+                for (int i = 0; i < config.getAcceptorsPerPort(); i++) {
+                    if (shared == null) {
+                        ServerSocketChannel channel = ServerSocketChannel.open();
+                        channels.add(channel);
+                        boolean reusePort = config.getAcceptorsPerPort() > 1
+                                && canReusePort(channel.supportedOptions(), port);
+                        if (reusePort) {
+                            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                        }
+                        channel.bind(new InetSocketAddress(port));
+                        channel.configureBlocking(false);
+                        shared = reusePort ? null : channel;
+                    } else {
+                        channels.add(shared);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            closeAll(channels);
+            throw e;
+        }
+        return channels;
+    }
+
+    /**
+     * Close each distinct socket in the list once.
+     */
+    static void closeAll(List<? extends Closeable> sockets) {
+        Map<Closeable, Boolean> closed = new IdentityHashMap<>();
+        for (Closeable socket : sockets) {
+            if (closed.put(socket, Boolean.TRUE) == null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Error closing listening socket", e);
+                }
+            }
+        }
+    }
+
+    private static boolean canReusePort(Set<SocketOption<?>> supported, int port) {
+        if (!supported.contains(StandardSocketOptions.SO_REUSEPORT)) {
+            LOGGER.info("SO_REUSEPORT not supported; acceptors on port " + port + " share one socket");
+            return false;
+        }
+        return true;
+    }
+}
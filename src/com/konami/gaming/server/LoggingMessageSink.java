@@ -0,0 +1,38 @@
+package com.konami.gaming.server;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Default sink for the headless server: counts messages and logs them at FINE.
+ */
+public class LoggingMessageSink implements MessageSink {
+
+    private static final Logger LOGGER = Logger.getLogger(LoggingMessageSink.class.getName());
+
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    @Override
+    public void onMessage(String messageId, String command, List<String[]> keyValuePairs) {
+        messageCount.incrementAndGet();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Message received: id=" + messageId + ", command=" + command + ", pairs=" + keyValuePairs.size());
+        }
+    }
+
+    @Override
+    public void onError(Exception e) {
+        errorCount.incrementAndGet();
+    }
+
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+}
@@ -0,0 +1,212 @@
+package com.konami.gaming.server;
+
+import com.konami.gaming.common.BinaryMessageBuilder;
+import com.konami.gaming.common.BinaryMessageProcessor;
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.MessageProcessor;
+import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.journal.MessageJournal;
+import com.konami.gaming.logging.RequestLog;
+import com.konami.gaming.xml.XmlProcessor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Shared message pipeline used by every server engine: parses a complete
+ * XML or binary payload, appends it to the {@link MessageJournal} when one
+ * is configured, merges its pairs into the live {@link KeyValueStore},
+ * passes the result to the {@link MessageSink} and builds the reply.
+ */
+public class MessageDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(MessageDispatcher.class.getName());
+    private static final RequestLog REQUEST_LOG = new RequestLog(LOGGER, "messages processed");
+
+    private static final byte[] CONFIRMATION_REPLY = (NetworkConstants.CONFIRMATION_MESSAGE + "\n"
+            + NetworkConstants.END_MARKER + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private final MessageSink sink;
+    private final ServerConfig config;
+    private final KeyValueStore stateStore;
+    private volatile MessageJournal journal;
+
+    public MessageDispatcher(MessageSink sink) {
+        this(sink, null);
+    }
+
+    /**
+     * @param config Supplies the journal settings; null runs without a journal
+     */
+    public MessageDispatcher(MessageSink sink, ServerConfig config) {
+        this.sink = sink;
+        this.config = config;
+        this.stateStore = config != null && config.isStateStore() ? new KeyValueStore() : null;
+        if (stateStore != null) {
+            ServerMetrics.gauge("konami_state_keys", stateStore::size);
+            ServerMetrics.gauge("konami_state_updates", stateStore::getUpdateCount);
+        }
+    }
+
+    /**
+     * Latest value and version of every key received, or null when disabled.
+     */
+    KeyValueStore getStateStore() {
+        return stateStore;
+    }
+
+    /**
+     * Open the message journal, if the configuration enables one. Engines
+     * call this before they start accepting clients.
+     */
+    void openJournal() throws IOException {
+        if (config != null && journal == null) {
+            journal = config.openJournal();
+        }
+    }
+
+    /**
+     * The open message journal, or null when journaling is off.
+     */
+    MessageJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Write out and close the journal. Messages dispatched afterwards are
+     * answered with an error.
+     */
+    void closeJournal() {
+        MessageJournal current = journal;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error closing message journal", e);
+            }
+        }
+    }
+
+    /**
+     * Process received XML message
+     * @param xmlData The XML data to process
+     * @return the reply body (without END); echoes the message ID when one was sent
+     */
+    public String dispatch(String xmlData) {
+        return dispatch(new XmlProcessor(xmlData), "");
+    }
+
+    /**
+     * Process a received message straight from the framing buffer. The content
+     * type is chosen per message: binary payloads start with
+     * {@link NetworkConstants#BINARY_MESSAGE_MAGIC}, anything else is XML.
+     * @param data Buffer holding the payload
+     * @param offset Start of the payload
+     * @param length Payload length
+     * @return the reply body (without END); echoes the message ID when one was sent
+     */
+    public String dispatch(byte[] data, int offset, int length) {
+        return dispatch(data, offset, length, "");
+    }
+
+    /**
+     * @param clientAddress Sender's address as "host:port", recorded in the journal
+     */
+    public String dispatch(byte[] data, int offset, int length, String clientAddress) {
+        if (BinaryMessageBuilder.isBinary(data, offset, length)) {
+            return dispatch(new BinaryMessageProcessor(data, offset, length), clientAddress);
+        }
+        return dispatch(new XmlProcessor(data, offset, length), clientAddress);
+    }
+
+    private String dispatch(MessageProcessor processor, String clientAddress) {
+        String messageId = "";
+        ServerMetrics.MESSAGES.increment();
+        try {
+            long start = System.nanoTime();
+            processor.process();
+            long parsed = System.nanoTime();
+            ServerMetrics.PARSE_NANOS.record(parsed - start);
+            if ("Error".equals(processor.getCommand())) {
+                ServerMetrics.PARSE_ERRORS.increment();
+            }
+            messageId = processor.getMessageId();
+
+            MessageJournal current = journal;
+            if (current != null) {
+                try {
+                    current.append(System.currentTimeMillis(), clientAddress, messageId,
+                            processor.getCommand(), processor.getKeyValuePairs());
+                } catch (IOException e) {
+                    // Not stored, so not confirmed either
+                    LOGGER.log(Level.SEVERE, "Error journaling message", e);
+                    ServerMetrics.JOURNAL_ERRORS.increment();
+                    sink.onError(e);
+                    return reply(messageId, NetworkConstants.ERROR_MESSAGE);
+                }
+            }
+            if (stateStore != null) {
+                stateStore.merge(processor.getKeyValuePairs());
+            }
+            sink.onMessage(messageId, processor.getCommand(), processor.getKeyValuePairs(), clientAddress);
+            ServerMetrics.DISPATCH_NANOS.record(System.nanoTime() - parsed);
+            
+            REQUEST_LOG.record();
+            if (REQUEST_LOG.sample()) {
+                LOGGER.fine("Message processed: id=" + messageId + ", command=" + processor.getCommand());
+            }
+            
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error processing message", e);
+            REQUEST_LOG.recordError();
+            ServerMetrics.DISPATCH_ERRORS.increment();
+            sink.onError(e);
+        }
+        return reply(messageId, NetworkConstants.CONFIRMATION_MESSAGE);
+    }
+
+    /**
+     * Encode a reply body for the wire in the framing the client negotiated.
+     */
+    public static byte[] encodeReply(String body, MessageFramer framer) {
+        byte[] encoded;
+        if (framer.getMode() != MessageFramer.Mode.LENGTH_PREFIXED
+                && NetworkConstants.CONFIRMATION_MESSAGE.equals(body)) {
+            encoded = CONFIRMATION_REPLY.clone();
+        } else {
+            encoded = framer.encodeReply(body.getBytes(StandardCharsets.UTF_8));
+        }
+        ServerMetrics.REPLIES.increment();
+        if (NetworkConstants.ERROR_MESSAGE.equals(body)) {
+            ServerMetrics.ERROR_REPLIES.increment();
+        }
+        ServerMetrics.BYTES_OUT.add(encoded.length);
+        return encoded;
+    }
+
+    /**
+     * Format a client's address for the journal and sinks as "host:port".
+     */
+    static String clientAddress(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inet = (InetSocketAddress) address;
+            String host = inet.getAddress() != null ? inet.getAddress().getHostAddress() : inet.getHostString();
+            return host + ":" + inet.getPort();
+        }
+        return address == null ? "" : address.toString();
+    }
+
+    /**
+     * Build a reply body, prefixed with the correlation ID line when there is one.
+     */
+    public static String reply(String messageId, String message) {
+        if (messageId == null || messageId.isEmpty()) {
+            return message;
+        }
+        return NetworkConstants.RESPONSE_ID_PREFIX + messageId + "\n" + message;
+    }
+}
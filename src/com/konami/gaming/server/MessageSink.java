@@ -0,0 +1,33 @@
+package com.konami.gaming.server;
+
+import java.util.List;
+
+/**
+ * Receives every message the server engines process. The GUI is one
+ * implementation; headless deployments plug in their own. Called on socket
+ * handler threads, possibly concurrently, so implementations must be
+ * thread-safe and should return quickly.
+ */
+public interface MessageSink {
+
+    /**
+     * @param messageId Correlation ID, or "" when the client sent none
+     * @param command The decoded command
+     * @param keyValuePairs Ordered {key, value} pairs
+     */
+    void onMessage(String messageId, String command, List<String[]> keyValuePairs);
+
+    /**
+     * Same as {@link #onMessage(String, String, List)}, with the sender's
+     * address; sinks that care about the client override this one.
+     * @param clientAddress Remote address as "host:port", or "" when unknown
+     */
+    default void onMessage(String messageId, String command, List<String[]> keyValuePairs, String clientAddress) {
+        onMessage(messageId, command, keyValuePairs);
+    }
+
+    /**
+     * A message could not be handled; the client still gets its reply.
+     */
+    default void onError(Exception e) {}
+}
@@ -0,0 +1,424 @@
+package com.konami.gaming.server;
+
+import com.konami.gaming.common.FrameTooLargeException;
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.journal.MessageJournal;
+import com.konami.gaming.logging.RequestLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Non-blocking server engine. Acceptor threads, one per listening socket (see
+ * {@link ListenSockets}), hand new connections round-robin to a small set of
+ * selector event loops, which frame the END-marker or length-prefixed
+ * protocol and dispatch complete messages inline. With
+ * keep-alive enabled a connection carries any number of messages. An
+ * {@link AdmissionController} caps open connections and pauses accepting
+ * while too many received bytes are waiting to be processed.
+ *
+ * <p>Because dispatch runs on the event loop, a journal with
+ * {@link MessageJournal.FsyncPolicy#ALWAYS} makes every connection on a loop
+ * wait for each fsync. Use more event loops or the blocking engine for that policy.
+ */
+public class NioSocketListener implements ServerEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(NioSocketListener.class.getName());
+    private static final RequestLog CONNECTION_LOG = new RequestLog(LOGGER, "client connections");
+
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final long IDLE_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ServerConfig config;
+    private final MessageDispatcher dispatcher;
+    private AdmissionController admission;
+    private final Queue<Selector> acceptSelectors = new ConcurrentLinkedQueue<>();
+    private volatile boolean isRunning = false;
+    private volatile boolean stopRequested = false; // set by close(), so failures can be told from shutdown
+
+    public NioSocketListener(MessageSink sink, ServerConfig config) {
+        this.config = config;
+        this.dispatcher = new MessageDispatcher(sink, config);
+    }
+
+    @Override
+    public void run() {
+        try {
+            startListening();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error in NIO socket listener", e);
+        }
+    }
+
+    private void startListening() throws IOException {
+        isRunning = true;
+        admission = new AdmissionController(config);
+        EventLoop[] eventLoops = new EventLoop[config.getEventLoops()];
+        List<ServerSocketChannel> channels = null;
+        List<Thread> acceptors = new ArrayList<>();
+
+        try {
+            dispatcher.openJournal();
+            if (dispatcher.getJournal() != null && config.getJournalFsync() == MessageJournal.FsyncPolicy.ALWAYS) {
+                LOGGER.warning("Journal fsync 'always' blocks each NIO event loop on every fsync;"
+                        + " consider more event loops or the blocking engine");
+            }
+            channels = ListenSockets.openServerChannels(config);
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new EventLoop();
+                new Thread(eventLoops[i], "Server-Event-Loop-" + i).start();
+            }
+            LOGGER.info("NIO server listening on port(s): " + config.getPorts() + " with "
+                    + config.getAcceptorsPerPort() + " acceptor(s) per port and " + eventLoops.length + " event loops");
+
+            // This thread runs the first acceptor; all of them hand clients to the same event loops
+            for (int i = 1; i < channels.size(); i++) {
+                ServerSocketChannel server = channels.get(i);
+                int first = i;
+                Thread acceptor = new Thread(() -> {
+                    try {
+                        acceptLoop(server, eventLoops, first);
+                    } catch (IOException e) {
+                        if (!stopRequested) LOGGER.log(Level.SEVERE, "Acceptor failed", e);
+                    }
+                }, "Server-Acceptor-" + i);
+                acceptor.setDaemon(true);
+                acceptor.start();
+                acceptors.add(acceptor);
+            }
+            acceptLoop(channels.get(0), eventLoops, 0);
+        } catch (IOException e) {
+            // The acceptor's finally has already cleared isRunning, so ask whether close() did
+            if (!stopRequested) {
+                LOGGER.log(Level.SEVERE, "Failed to run server channel", e);
+                throw e;
+            }
+        } finally {
+            isRunning = false;
+            wakeAcceptors();
+            for (Thread acceptor : acceptors) {
+                try {
+                    acceptor.join(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (channels != null) {
+                ListenSockets.closeAll(channels);
+            }
+            for (EventLoop loop : eventLoops) {
+                if (loop != null) loop.selector.wakeup();
+            }
+            dispatcher.closeJournal();
+        }
+    }
+
+    /**
+     * Accept clients from one listening channel until the server stops,
+     * handing them round-robin to the event loops.
+     */
+    private void acceptLoop(ServerSocketChannel server, EventLoop[] eventLoops, int firstLoop) throws IOException {
+        Selector selector = Selector.open();
+        acceptSelectors.add(selector);
+        try {
+            SelectionKey acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+            int nextLoop = firstLoop % eventLoops.length;
+            while (isRunning) {
+                if (admission.shouldPauseAccept()) {
+                    // Leave new clients in the kernel backlog until in-flight work drains
+                    acceptKey.interestOps(0);
+                    selector.select(AdmissionController.ACCEPT_PAUSE_MILLIS);
+                    continue;
+                }
+                acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                // 1 second timeout so we re-check the running flags
+                if (selector.select(1000) == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+                SocketChannel client;
+                // A shared channel may already have been drained by another acceptor
+                while ((client = server.accept()) != null) {
+                    ServerMetrics.CONNECTIONS_ACCEPTED.increment();
+                    client.configureBlocking(false);
+                    if (!admission.tryAdmit()) {
+                        AdmissionController.rejectBusy(client);
+                        continue;
+                    }
+                    CONNECTION_LOG.record();
+                    if (CONNECTION_LOG.sample()) {
+                        LOGGER.fine("Client connected: " + client.getRemoteAddress());
+                    }
+                    eventLoops[nextLoop].register(client);
+                    nextLoop = (nextLoop + 1) % eventLoops.length;
+                }
+            }
+        } finally {
+            // One acceptor failing stops the server rather than silently dropping a listener
+            isRunning = false;
+            acceptSelectors.remove(selector);
+            selector.close();
+        }
+    }
+
+    private void wakeAcceptors() {
+        for (Selector selector : acceptSelectors) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public MessageJournal getJournal() {
+        return dispatcher.getJournal();
+    }
+
+    @Override
+    public KeyValueStore getStateStore() {
+        return dispatcher.getStateStore();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopRequested = true;
+        isRunning = false;
+        if (!acceptSelectors.isEmpty()) {
+            wakeAcceptors();
+            LOGGER.info("NIO server channel closing");
+        }
+    }
+
+    /**
+     * Selector loop that owns a subset of client channels. All reads, framing,
+     * dispatch and writes for a channel happen on this one thread.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+        private long lastIdleSweep = System.nanoTime();
+
+        EventLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            pendingChannels.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (isRunning) {
+                    selector.select(1000);
+                    registerPending();
+                    closeIdleConnections();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) continue;
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                handleRead(key, connection);
+                            } else if (key.isWritable()) {
+                                handleWrite(key, connection);
+                            }
+                        } catch (IOException e) {
+                            ServerMetrics.READ_ERRORS.increment();
+                            LOGGER.log(Level.WARNING, "Error handling client", e);
+                            closeConnection(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Event loop failed", e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeConnection(key);
+                }
+                SocketChannel channel;
+                while ((channel = pendingChannels.poll()) != null) {
+                    closeQuietly(channel);
+                    admission.release(0);
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Error closing selector", e);
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pendingChannels.poll()) != null) {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(config.newFramer(READ_BUFFER_SIZE),
+                            MessageDispatcher.clientAddress(channel.getRemoteAddress())));
+                    ServerMetrics.CONNECTIONS_ACTIVE.incrementAndGet();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Error registering client", e);
+                    closeQuietly(channel);
+                    admission.release(0);
+                }
+            }
+        }
+
+        private void handleRead(SelectionKey key, Connection connection) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            int read = connection.framer.fill(channel);
+            if (read < 0) {
+                // Client closed; an open partial message (or no message at all) is an error
+                if (connection.framer.hasPartialFrame() || connection.messagesHandled == 0) {
+                    LOGGER.warning("Incomplete or empty message received");
+                    queueResponse(connection, NetworkConstants.ERROR_MESSAGE);
+                }
+                connection.closeAfterWrite = true;
+                key.interestOps(SelectionKey.OP_WRITE);
+                handleWrite(key, connection);
+                return;
+            }
+            ServerMetrics.BYTES_IN.add(read);
+            connection.lastActivity = System.nanoTime();
+            connection.inFlight = admission.updateInFlight(connection.inFlight, connection.framer.bufferedBytes());
+
+            // Several messages may arrive in one read; reply to each in order.
+            // Frames are parsed in place before the next fill can compact the buffer.
+            MessageFramer framer = connection.framer;
+            while (!connection.closeAfterWrite && nextFrame(channel, connection)) {
+                if (framer.frameLength() == 0) {
+                    LOGGER.warning("Incomplete or empty message received");
+                    queueResponse(connection, NetworkConstants.ERROR_MESSAGE);
+                } else {
+                    queueResponse(connection,
+                            dispatcher.dispatch(framer.frameArray(), framer.frameOffset(), framer.frameLength(),
+                                    connection.clientAddress));
+                }
+                connection.messagesHandled++;
+                if (!config.isKeepAlive()) {
+                    connection.closeAfterWrite = true;
+                }
+            }
+            connection.inFlight = admission.updateInFlight(connection.inFlight, framer.bufferedBytes());
+            if (!connection.pendingWrites.isEmpty()) {
+                handleWrite(key, connection);
+            }
+        }
+
+        /**
+         * Next complete frame of the connection. An oversized message is
+         * answered with an error reply and the connection closed once it is
+         * written; the rest of the message is never read.
+         */
+        private boolean nextFrame(SocketChannel channel, Connection connection) throws IOException {
+            try {
+                return connection.framer.nextFrame();
+            } catch (FrameTooLargeException e) {
+                ServerMetrics.OVERSIZED_MESSAGES.increment();
+                LOGGER.warning("Closing client " + channel.getRemoteAddress() + ": " + e.getMessage());
+                queueResponse(connection, NetworkConstants.ERROR_MESSAGE);
+                connection.closeAfterWrite = true;
+                return false;
+            }
+        }
+
+        private void queueResponse(Connection connection, String message) {
+            connection.pendingWrites.add(ByteBuffer.wrap(MessageDispatcher.encodeReply(message, connection.framer)));
+        }
+
+        private void handleWrite(SelectionKey key, Connection connection) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (!connection.pendingWrites.isEmpty()) {
+                // Gathering write: all queued replies in one call
+                channel.write(connection.pendingWrites.toArray(new ByteBuffer[0]));
+                ByteBuffer pending;
+                while ((pending = connection.pendingWrites.peek()) != null && !pending.hasRemaining()) {
+                    connection.pendingWrites.poll();
+                }
+                if (!connection.pendingWrites.isEmpty()) {
+                    // Socket buffer full; wait for OP_WRITE and stop reading until drained
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            if (connection.closeAfterWrite) {
+                closeConnection(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Close keep-alive sessions that have been idle past the configured timeout.
+         */
+        private void closeIdleConnections() {
+            long now = System.nanoTime();
+            if (config.getIdleTimeout() <= 0 || now - lastIdleSweep < IDLE_SWEEP_INTERVAL_NANOS) {
+                return;
+            }
+            lastIdleSweep = now;
+            long idleNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeout());
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection != null && connection.pendingWrites.isEmpty()
+                        && now - connection.lastActivity > idleNanos) {
+                    LOGGER.fine("Closing idle client session");
+                    closeConnection(key);
+                }
+            }
+        }
+
+        private void closeConnection(SelectionKey key) {
+            boolean wasOpen = key.channel().isOpen();
+            key.cancel();
+            closeQuietly(key.channel());
+            if (wasOpen) {
+                ServerMetrics.CONNECTIONS_ACTIVE.decrementAndGet();
+                Connection connection = (Connection) key.attachment();
+                admission.release(connection != null ? connection.inFlight : 0);
+            }
+        }
+    }
+
+    private static void closeQuietly(java.nio.channels.Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing channel", e);
+        }
+    }
+
+    /**
+     * Per-connection framing and write state.
+     */
+    private static final class Connection {
+        // Starts small; grows only for connections that send large messages, up to the size limit
+        private final MessageFramer framer;
+        private final String clientAddress;
+        private final Queue<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        private long lastActivity = System.nanoTime();
+        private int inFlight;     // buffered bytes counted against the admission budget
+        private int messagesHandled;
+        private boolean closeAfterWrite;
+
+        Connection(MessageFramer framer, String clientAddress) {
+            this.framer = framer;
+            this.clientAddress = clientAddress;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.konami.gaming.server;
+
+import com.konami.gaming.common.MessageFramer;
+import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.journal.MessageJournal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Startup configuration for the socket server. Defaults come from
+ * {@link NetworkConstants} and can be overridden with -Dkonami.server.* properties.
+ */
+public class ServerConfig {
+
+    /** Available server engines. */
+    public enum Engine { BLOCKING, NIO }
+
+    public static final String PROP_PORT = "konami.server.port";
+    public static final String PROP_WORKER_THREADS = "konami.server.workerThreads";
+    public static final String PROP_WORKER_QUEUE_DEPTH = "konami.server.workerQueueDepth";
+    public static final String PROP_VIRTUAL_THREADS = "konami.server.virtualThreads";
+    public static final String PROP_ENGINE = "konami.server.engine";
+    public static final String PROP_EVENT_LOOPS = "konami.server.eventLoops";
+    public static final String PROP_KEEP_ALIVE = "konami.server.keepAlive";
+    public static final String PROP_IDLE_TIMEOUT = "konami.server.idleTimeoutMs";
+    public static final String PROP_UI_MAX_FPS = "konami.server.uiMaxFps";
+    public static final String PROP_METRICS_PORT = "konami.server.metricsPort";
+    public static final String PROP_MAX_CONNECTIONS = "konami.server.maxConnections";
+    public static final String PROP_MAX_IN_FLIGHT_BYTES = "konami.server.maxInFlightBytes";
+    public static final String PROP_EXTRA_PORTS = "konami.server.extraPorts";
+    public static final String PROP_ACCEPTORS_PER_PORT = "konami.server.acceptorsPerPort";
+    public static final String PROP_MAX_MESSAGE_BYTES = "konami.server.maxMessageBytes";
+    public static final String PROP_MAX_LINE_BYTES = "konami.server.maxLineBytes";
+    public static final String PROP_JOURNAL_DIR = "konami.server.journalDir";
+    public static final String PROP_JOURNAL_FSYNC = "konami.server.journalFsync";
+    public static final String PROP_JOURNAL_FSYNC_INTERVAL = "konami.server.journalFsyncIntervalMs";
+    public static final String PROP_JOURNAL_SEGMENT_BYTES = "konami.server.journalSegmentBytes";
+    public static final String PROP_JOURNAL_INDEX = "konami.server.journalIndex";
+    public static final String PROP_STATE_STORE = "konami.server.stateStore";
+
+    private int port = NetworkConstants.DEFAULT_PORT;
+    private int workerThreads = NetworkConstants.DEFAULT_WORKER_THREADS;
+    private int workerQueueDepth = NetworkConstants.DEFAULT_WORKER_QUEUE_DEPTH;
+    private boolean virtualThreads = false;
+    private Engine engine = Engine.BLOCKING;
+    private int eventLoops = NetworkConstants.DEFAULT_EVENT_LOOPS;
+    private boolean keepAlive = true;
+    private int idleTimeout = NetworkConstants.SESSION_IDLE_TIMEOUT;
+    private int uiMaxFps = 0;
+    private int metricsPort = 0;
+    private int maxConnections = NetworkConstants.DEFAULT_MAX_CONNECTIONS;
+    private long maxInFlightBytes = NetworkConstants.DEFAULT_MAX_IN_FLIGHT_BYTES;
+    private List<Integer> extraPorts = Collections.emptyList();
+    private int acceptorsPerPort = 1;
+    private int maxMessageBytes = NetworkConstants.DEFAULT_MAX_MESSAGE_BYTES;
+    private int maxLineBytes = NetworkConstants.DEFAULT_MAX_LINE_BYTES;
+    private Path journalDir = null;
+    private MessageJournal.FsyncPolicy journalFsync = MessageJournal.FsyncPolicy.INTERVAL;
+    private long journalFsyncInterval = NetworkConstants.DEFAULT_JOURNAL_FSYNC_INTERVAL;
+    private long journalSegmentBytes = NetworkConstants.DEFAULT_JOURNAL_SEGMENT_BYTES;
+    private boolean journalIndex = true;
+    private boolean stateStore = true;
+
+    /**
+     * Build a configuration from the default values and any -D overrides.
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        config.setPort(Integer.getInteger(PROP_PORT, config.port));
+        config.setWorkerThreads(Integer.getInteger(PROP_WORKER_THREADS, config.workerThreads));
+        config.setWorkerQueueDepth(Integer.getInteger(PROP_WORKER_QUEUE_DEPTH, config.workerQueueDepth));
+        config.setVirtualThreads(Boolean.getBoolean(PROP_VIRTUAL_THREADS));
+        config.setEngine(Engine.valueOf(System.getProperty(PROP_ENGINE, config.engine.name()).trim().toUpperCase()));
+        config.setEventLoops(Integer.getInteger(PROP_EVENT_LOOPS, config.eventLoops));
+        config.setKeepAlive(Boolean.parseBoolean(System.getProperty(PROP_KEEP_ALIVE, String.valueOf(config.keepAlive))));
+        config.setIdleTimeout(Integer.getInteger(PROP_IDLE_TIMEOUT, config.idleTimeout));
+        config.setUiMaxFps(Integer.getInteger(PROP_UI_MAX_FPS, config.uiMaxFps));
+        config.setMetricsPort(Integer.getInteger(PROP_METRICS_PORT, config.metricsPort));
+        config.setMaxConnections(Integer.getInteger(PROP_MAX_CONNECTIONS, config.maxConnections));
+        config.setMaxInFlightBytes(Long.getLong(PROP_MAX_IN_FLIGHT_BYTES, config.maxInFlightBytes));
+        config.setExtraPorts(parsePorts(System.getProperty(PROP_EXTRA_PORTS, "")));
+        config.setAcceptorsPerPort(Integer.getInteger(PROP_ACCEPTORS_PER_PORT, config.acceptorsPerPort));
+        config.setMaxMessageBytes(Integer.getInteger(PROP_MAX_MESSAGE_BYTES, config.maxMessageBytes));
+        config.setMaxLineBytes(Integer.getInteger(PROP_MAX_LINE_BYTES, config.maxLineBytes));
+        String journalDir = System.getProperty(PROP_JOURNAL_DIR, "").trim();
+        config.setJournalDir(journalDir.isEmpty() ? null : Paths.get(journalDir));
+        config.setJournalFsync(MessageJournal.FsyncPolicy.valueOf(
+                System.getProperty(PROP_JOURNAL_FSYNC, config.journalFsync.name()).trim().toUpperCase()));
+        config.setJournalFsyncInterval(Long.getLong(PROP_JOURNAL_FSYNC_INTERVAL, config.journalFsyncInterval));
+        config.setJournalSegmentBytes(Long.getLong(PROP_JOURNAL_SEGMENT_BYTES, config.journalSegmentBytes));
+        config.setJournalIndex(Boolean.parseBoolean(System.getProperty(PROP_JOURNAL_INDEX, String.valueOf(config.journalIndex))));
+        config.setStateStore(Boolean.parseBoolean(System.getProperty(PROP_STATE_STORE, String.valueOf(config.stateStore))));
+        return config;
+    }
+
+    public int getPort() { return port; }
+    public void setPort(int port) { this.port = port; }
+
+    /** Ports served in addition to {@link #getPort()}, through the same pipeline. */
+    public List<Integer> getExtraPorts() { return extraPorts; }
+    public void setExtraPorts(List<Integer> extraPorts) { this.extraPorts = new ArrayList<>(extraPorts); }
+
+    /** The main port followed by any extra ports, without duplicates. */
+    public List<Integer> getPorts() {
+        List<Integer> ports = new ArrayList<>();
+        ports.add(port);
+        for (int extra : extraPorts) {
+            if (!ports.contains(extra)) ports.add(extra);
+        }
+        return ports;
+    }
+
+    /** Acceptor threads per port; above 1 they bind with SO_REUSEPORT where supported. */
+    public int getAcceptorsPerPort() { return acceptorsPerPort; }
+    public void setAcceptorsPerPort(int acceptorsPerPort) { this.acceptorsPerPort = Math.max(1, acceptorsPerPort); }
+
+    public int getWorkerThreads() { return workerThreads; }
+    public void setWorkerThreads(int workerThreads) { this.workerThreads = Math.max(1, workerThreads); }
+
+    public int getWorkerQueueDepth() { return workerQueueDepth; }
+    public void setWorkerQueueDepth(int workerQueueDepth) { this.workerQueueDepth = Math.max(0, workerQueueDepth); }
+
+    public boolean isVirtualThreads() { return virtualThreads; }
+    public void setVirtualThreads(boolean virtualThreads) { this.virtualThreads = virtualThreads; }
+
+    public Engine getEngine() { return engine; }
+    public void setEngine(Engine engine) { this.engine = engine; }
+
+    public int getEventLoops() { return eventLoops; }
+    public void setEventLoops(int eventLoops) { this.eventLoops = Math.max(1, eventLoops); }
+
+    public boolean isKeepAlive() { return keepAlive; }
+    public void setKeepAlive(boolean keepAlive) { this.keepAlive = keepAlive; }
+
+    /** Idle time in milliseconds before a keep-alive session is closed. */
+    public int getIdleTimeout() { return idleTimeout; }
+    public void setIdleTimeout(int idleTimeout) { this.idleTimeout = Math.max(0, idleTimeout); }
+
+    /** Maximum display refreshes per second; 0 means once per frame. */
+    public int getUiMaxFps() { return uiMaxFps; }
+    public void setUiMaxFps(int uiMaxFps) { this.uiMaxFps = Math.max(0, uiMaxFps); }
+
+    /** Loopback port of the plaintext metrics endpoint; 0 disables it. */
+    public int getMetricsPort() { return metricsPort; }
+    public void setMetricsPort(int metricsPort) { this.metricsPort = Math.max(0, metricsPort); }
+
+    /** Open client connections (including queued ones) before new clients are told BUSY; 0 means no limit. */
+    public int getMaxConnections() { return maxConnections; }
+    public void setMaxConnections(int maxConnections) { this.maxConnections = Math.max(0, maxConnections); }
+
+    /** Received bytes awaiting processing across all connections before accepts pause; 0 means no limit. */
+    public long getMaxInFlightBytes() { return maxInFlightBytes; }
+    public void setMaxInFlightBytes(long maxInFlightBytes) { this.maxInFlightBytes = Math.max(0, maxInFlightBytes); }
+
+    /** Largest message payload a client may send before it is disconnected; 0 means no limit. */
+    public int getMaxMessageBytes() { return maxMessageBytes; }
+    public void setMaxMessageBytes(int maxMessageBytes) { this.maxMessageBytes = Math.max(0, maxMessageBytes); }
+
+    /** Longest line allowed in an END-marker message; 0 means no limit. */
+    public int getMaxLineBytes() { return maxLineBytes; }
+    public void setMaxLineBytes(int maxLineBytes) { this.maxLineBytes = Math.max(0, maxLineBytes); }
+
+    /** Directory of the message journal; null disables journaling. */
+    public Path getJournalDir() { return journalDir; }
+    public void setJournalDir(Path journalDir) { this.journalDir = journalDir; }
+
+    /** When journal writes are forced to disk, and so how long handlers wait on an append. */
+    public MessageJournal.FsyncPolicy getJournalFsync() { return journalFsync; }
+    public void setJournalFsync(MessageJournal.FsyncPolicy journalFsync) { this.journalFsync = journalFsync; }
+
+    /** Milliseconds between journal fsyncs with the INTERVAL policy. */
+    public long getJournalFsyncInterval() { return journalFsyncInterval; }
+    public void setJournalFsyncInterval(long journalFsyncInterval) { this.journalFsyncInterval = Math.max(1, journalFsyncInterval); }
+
+    /** Size at which the journal starts a new segment file. */
+    public long getJournalSegmentBytes() { return journalSegmentBytes; }
+    public void setJournalSegmentBytes(long journalSegmentBytes) { this.journalSegmentBytes = Math.max(4096, journalSegmentBytes); }
+
+    /** Keep in-memory indexes of the journal for lookups by command, key, value and time. */
+    public boolean isJournalIndex() { return journalIndex; }
+    public void setJournalIndex(boolean journalIndex) { this.journalIndex = journalIndex; }
+
+    /** Keep the latest value and a version for every key received (see {@link KeyValueStore}). */
+    public boolean isStateStore() { return stateStore; }
+    public void setStateStore(boolean stateStore) { this.stateStore = stateStore; }
+
+    private static List<Integer> parsePorts(String value) {
+        List<Integer> ports = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) ports.add(Integer.parseInt(part.trim()));
+        }
+        return ports;
+    }
+
+    /**
+     * Framer for one client connection, with this configuration's size limits.
+     */
+    MessageFramer newFramer(int initialCapacity) {
+        return new MessageFramer(MessageFramer.Mode.NEGOTIATE, initialCapacity, maxMessageBytes, maxLineBytes);
+    }
+
+    /**
+     * Open the configured message journal.
+     * @return the journal, or null when journaling is disabled
+     */
+    MessageJournal openJournal() throws IOException {
+        if (journalDir == null) {
+            return null;
+        }
+        return new MessageJournal(journalDir, journalFsync, journalFsyncInterval, journalSegmentBytes, journalIndex);
+    }
+}
@@ -0,0 +1,47 @@
+package com.konami.gaming.server;
+
+import com.konami.gaming.journal.MessageJournal;
+
+import java.io.IOException;
+
+/**
+ * A server engine accepts client connections, frames incoming messages
+ * and hands them to the {@link MessageDispatcher}, which passes the decoded
+ * content to a {@link MessageSink}. The implementation is
+ * chosen at startup from {@link ServerConfig#getEngine()}.
+ */
+public interface ServerEngine extends Runnable {
+
+    /**
+     * Stop accepting connections and release the listening socket.
+     * @throws IOException if there's an error closing resources
+     */
+    void close() throws IOException;
+
+    /**
+     * The message journal while the engine is running, for lookups through
+     * its {@link MessageJournal#getIndex() index}; null when journaling is off.
+     */
+    default MessageJournal getJournal() {
+        return null;
+    }
+
+    /**
+     * Live key to latest-value state merged from every message; null when
+     * disabled with -Dkonami.server.stateStore=false.
+     */
+    default KeyValueStore getStateStore() {
+        return null;
+    }
+
+    static ServerEngine create(MessageSink sink, ServerConfig config) {
+        ServerMetrics.expose(config);
+        switch (config.getEngine()) {
+            case NIO:
+                return new NioSocketListener(sink, config);
+            case BLOCKING:
+            default:
+                return new SocketListener(sink, config);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.konami.gaming.server;
+
+import com.konami.gaming.common.LatencyHistogram;
+import com.konami.gaming.metrics.Counter;
+import com.konami.gaming.metrics.Gauge;
+import com.konami.gaming.metrics.Meter;
+import com.konami.gaming.metrics.MetricsHttpServer;
+import com.konami.gaming.metrics.MetricsMBean;
+import com.konami.gaming.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Server metrics, one per pipeline stage, in the shared {@link MetricsRegistry}.
+ * Held in constants so the hot path records without any lookup.
+ */
+final class ServerMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(ServerMetrics.class.getName());
+
+    static final String JMX_NAME = "com.konami.gaming:type=ServerMetrics";
+
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.shared();
+
+    // Accept
+    static final Counter CONNECTIONS_ACCEPTED = REGISTRY.counter("konami_server_connections_accepted");
+    static final Counter CONNECTIONS_REJECTED = REGISTRY.counter("konami_server_connections_rejected");
+    static final AtomicLong CONNECTIONS_ACTIVE = new AtomicLong();
+    static final Counter ACCEPT_PAUSES = REGISTRY.counter("konami_server_accept_pauses");
+    // Read
+    static final Counter BYTES_IN = REGISTRY.counter("konami_server_bytes_in");
+    static final Counter READ_ERRORS = REGISTRY.counter("konami_server_read_errors");
+    static final Counter OVERSIZED_MESSAGES = REGISTRY.counter("konami_server_oversized_messages");
+    // Parse
+    static final Meter MESSAGES = REGISTRY.meter("konami_server_messages");
+    static final Counter PARSE_ERRORS = REGISTRY.counter("konami_server_parse_errors");
+    static final LatencyHistogram PARSE_NANOS = REGISTRY.histogram("konami_server_parse_nanos");
+    // Dispatch
+    static final Counter DISPATCH_ERRORS = REGISTRY.counter("konami_server_dispatch_errors");
+    static final LatencyHistogram DISPATCH_NANOS = REGISTRY.histogram("konami_server_dispatch_nanos");
+    static final Counter JOURNAL_ERRORS = REGISTRY.counter("konami_server_journal_errors");
+    // Reply
+    static final Counter REPLIES = REGISTRY.counter("konami_server_replies");
+    static final Counter ERROR_REPLIES = REGISTRY.counter("konami_server_error_replies");
+    static final Counter BYTES_OUT = REGISTRY.counter("konami_server_bytes_out");
+
+    private static boolean exposed;
+    private static MetricsHttpServer httpServer;
+
+    static {
+        REGISTRY.gauge("konami_server_connections_active", CONNECTIONS_ACTIVE::get);
+    }
+
+    private ServerMetrics() {}
+
+    /**
+     * Register a gauge, replacing the one from a previous engine instance.
+     */
+    static void gauge(String name, Gauge gauge) {
+        REGISTRY.gauge(name, gauge);
+    }
+
+    /**
+     * Register the JMX bean and, when a metrics port is configured, start the
+     * plaintext endpoint. Both stay up for the life of the JVM, so restarting
+     * the server from the GUI does not rebind them.
+     */
+    static synchronized void expose(ServerConfig config) {
+        if (!exposed) {
+            exposed = true;
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(new MetricsMBean(REGISTRY), new ObjectName(JMX_NAME));
+            } catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Could not register metrics MBean", e);
+            }
+        }
+        if (httpServer == null && config.getMetricsPort() > 0) {
+            try {
+                httpServer = new MetricsHttpServer(REGISTRY, config.getMetricsPort());
+                httpServer.start();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not start metrics endpoint on port " + config.getMetricsPort(), e);
+            }
+        }
+    }
+}
@@ -1,37 +1,55 @@
 package com.konami.gaming.server;
 
-import com.konami.gaming.xml.XmlProcessor;
+import com.konami.gaming.common.FrameTooLargeException;
+import com.konami.gaming.common.MessageFramer;
 import com.konami.gaming.common.NetworkConstants;
+import com.konami.gaming.journal.MessageJournal;
+import com.konami.gaming.logging.RequestLog;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 /**
  * Modern socket listener implementation using proper resource management
  * and error handling. This class handles incoming client connections
- * and processes XML messages.
+ * and processes XML messages, keeping sessions open for further messages
+ * when keep-alive is enabled. Each listening socket (see {@link ListenSockets})
+ * has its own acceptor thread, all feeding one handler pool. An
+ * {@link AdmissionController} caps open connections and pauses accepting
+ * while the handler queue or unprocessed bytes are above their high-water marks.
  */
-public class SocketListener implements Runnable {
+public class SocketListener implements ServerEngine {
     
     private static final Logger LOGGER = Logger.getLogger(SocketListener.class.getName());
+    private static final RequestLog CONNECTION_LOG = new RequestLog(LOGGER, "client connections");
+    private static final int IDLE_POLL_MILLIS = 100;
+    private static final int READ_BUFFER_SIZE = 4096;
     
-    private final GUIServer guiServer;
-    private ServerSocket serverSocket;
+    private final ServerConfig config;
+    private final MessageDispatcher dispatcher;
+    private ClientHandlerPool handlerPool;
+    private AdmissionController admission;
+    private volatile List<ServerSocket> serverSockets;
     private volatile boolean isRunning = false;
     
     /**
      * Constructor for SocketListener
-     * @param guiServer Reference to the GUI server
+     * @param sink Receives every processed message
+     * @param config Server configuration (port, worker pool sizing)
      */
-    public SocketListener(GUIServer guiServer) {
-        this.guiServer = guiServer;
+    public SocketListener(MessageSink sink, ServerConfig config) {
+        this.config = config;
+        this.dispatcher = new MessageDispatcher(sink, config);
     }
     
     @Override
@@ -49,111 +67,242 @@ public class SocketListener implements Runnable {
      */
     private void startListening() throws IOException {
         isRunning = true;
+        handlerPool = new ClientHandlerPool(config);
+        admission = new AdmissionController(config, handlerPool::getQueuedCount, config.getWorkerQueueDepth());
         
-        try (ServerSocket server = new ServerSocket(guiServer.getServerPortNumber())) {
-            this.serverSocket = server;
-            server.setSoTimeout(1000); // 1 second timeout for accept()
+        List<Thread> acceptors = new ArrayList<>();
+        try {
+            dispatcher.openJournal();
+            List<ServerSocket> sockets = ListenSockets.openServerSockets(config);
+            this.serverSockets = sockets;
+            for (ServerSocket server : sockets) {
+                server.setSoTimeout(1000); // 1 second timeout for accept()
+            }
             
-            LOGGER.info("Server listening on port: " + guiServer.getServerPortNumber());
+            LOGGER.info("Server listening on port(s): " + config.getPorts() + " with "
+                    + config.getAcceptorsPerPort() + " acceptor(s) per port");
             
-            while (isRunning && guiServer.isServerRunning()) {
-                try {
-                    Socket clientSocket = server.accept();
-                    LOGGER.info("Client connected: " + clientSocket.getRemoteSocketAddress());
-                    
-                    // Handle each client in a separate thread so we can accept more connections
-                    Thread clientHandler = new Thread(() -> handleClient(clientSocket), "Server-Client-Handler");
-                    clientHandler.start();
-                    
-                } catch (SocketTimeoutException e) {
-                    // Timeout is expected, continue checking if we should still run
-                    continue;
-                } catch (IOException e) {
-                    if (isRunning) {
-                        LOGGER.log(Level.WARNING, "Error accepting client connection", e);
-                    }
-                }
+            // This thread runs the first acceptor; all of them feed the same handler pool
+            for (int i = 1; i < sockets.size(); i++) {
+                ServerSocket server = sockets.get(i);
+                Thread acceptor = new Thread(() -> acceptLoop(server), "Server-Acceptor-" + i);
+                acceptor.setDaemon(true);
+                acceptor.start();
+                acceptors.add(acceptor);
             }
+            acceptLoop(sockets.get(0));
             
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to create server socket", e);
             throw e;
+        } finally {
+            isRunning = false;
+            if (serverSockets != null) {
+                ListenSockets.closeAll(serverSockets);
+            }
+            for (Thread acceptor : acceptors) {
+                try {
+                    acceptor.join(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            handlerPool.shutdown();
+            dispatcher.closeJournal();
+        }
+    }
+    
+    /**
+     * Accept clients from one listening socket until the server stops.
+     */
+    private void acceptLoop(ServerSocket server) {
+        while (isRunning) {
+            if (admission.shouldPauseAccept()) {
+                // Leave new clients in the kernel backlog until the handlers catch up
+                try {
+                    Thread.sleep(AdmissionController.ACCEPT_PAUSE_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            try {
+                Socket clientSocket = server.accept();
+                ServerMetrics.CONNECTIONS_ACCEPTED.increment();
+                if (!admission.tryAdmit()) {
+                    AdmissionController.rejectBusy(clientSocket);
+                    continue;
+                }
+                CONNECTION_LOG.record();
+                if (CONNECTION_LOG.sample()) {
+                    LOGGER.fine("Client connected: " + clientSocket.getRemoteSocketAddress());
+                }
+                
+                // Hand off to the bounded worker pool so we can accept more connections
+                if (!handlerPool.submit(clientSocket, this::handleClient)) {
+                    admission.release(0);
+                }
+                
+            } catch (SocketTimeoutException e) {
+                // Timeout is expected, continue checking if we should still run
+                continue;
+            } catch (IOException e) {
+                if (isRunning) {
+                    LOGGER.log(Level.WARNING, "Error accepting client connection", e);
+                }
+            }
         }
     }
     
     /**
-     * Handle individual client connection
+     * Handle a client session. The first byte selects END-marker or
+     * length-prefixed framing, and replies use the same. With keep-alive enabled
+     * the client may send any number of messages and gets one reply per message,
+     * in order; the session ends when the client closes or stays idle past the timeout.
      * @param clientSocket The connected client socket
      */
     private void handleClient(Socket clientSocket) {
+        ServerMetrics.CONNECTIONS_ACTIVE.incrementAndGet();
+        int inFlight = 0;
         try (Socket socket = clientSocket;
-             BufferedReader reader = new BufferedReader(
-                 new InputStreamReader(socket.getInputStream(), NetworkConstants.ENCODING));
-             PrintWriter writer = new PrintWriter(
-                 socket.getOutputStream(), true)) {
+             InputStream in = socket.getInputStream();
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
             
-            StringBuilder xmlData = new StringBuilder();
-            String line;
-            boolean messageComplete = false;
+            // Poll idle sessions in short slices so a waiting client can take the thread over
+            int idleTimeout = config.getIdleTimeout();
+            socket.setSoTimeout(idleTimeout > 0 ? Math.min(idleTimeout, IDLE_POLL_MILLIS) : IDLE_POLL_MILLIS);
+            long idleSince = System.nanoTime();
+            MessageFramer framer = config.newFramer(READ_BUFFER_SIZE);
+            String clientAddress = MessageDispatcher.clientAddress(socket.getRemoteSocketAddress());
+            int messagesHandled = 0;
+            boolean sessionOpen = true;
             
-            // Read XML message from client
-            while ((line = reader.readLine()) != null && !messageComplete) {
-                if (NetworkConstants.END_MARKER.equals(line.trim())) {
-                    messageComplete = true;
-                    break;
+            while (sessionOpen) {
+                // Reply to every complete message already buffered; the parser reads the frame in place
+                while (nextFrame(framer, out)) {
+                    if (framer.frameLength() > 0) {
+                        String reply = dispatcher.dispatch(framer.frameArray(), framer.frameOffset(), framer.frameLength(),
+                                clientAddress);
+                        
+                        // Send confirmation (with the echoed message ID, if any) to client
+                        out.write(MessageDispatcher.encodeReply(reply, framer));
+                    } else {
+                        LOGGER.warning("Incomplete or empty message received");
+                        out.write(MessageDispatcher.encodeReply(NetworkConstants.ERROR_MESSAGE, framer));
+                    }
+                    messagesHandled++;
+                    
+                    if (!config.isKeepAlive()) {
+                        sessionOpen = false;
+                        break;
+                    }
                 }
-                xmlData.append(line).append("\n");
-            }
-            
-            if (messageComplete && xmlData.length() > 0) {
-                // Process XML data
-                processXmlMessage(xmlData.toString());
+                out.flush();
                 
-                // Send confirmation to client
-                writer.println(NetworkConstants.CONFIRMATION_MESSAGE);
-                writer.println(NetworkConstants.END_MARKER);
-                writer.flush();
+                if (!sessionOpen || !isRunning) {
+                    break;
+                }
                 
-                LOGGER.info("XML message processed and response sent");
-            } else {
-                LOGGER.warning("Incomplete or empty message received");
-                writer.println(NetworkConstants.ERROR_MESSAGE);
-                writer.println(NetworkConstants.END_MARKER);
-                writer.flush();
+                inFlight = admission.updateInFlight(inFlight, framer.bufferedBytes());
+                int read;
+                try {
+                    read = framer.fill(in);
+                } catch (SocketTimeoutException e) {
+                    if (idleTimeout > 0 && System.nanoTime() - idleSince >= TimeUnit.MILLISECONDS.toNanos(idleTimeout)) {
+                        throw e;
+                    }
+                    // Idle with nothing unread: give the worker to a waiting client. This includes
+                    // a client that has sent nothing yet, so silent connections cannot pin workers
+                    if (!framer.hasPartialFrame() && in.available() == 0
+                            && handlerPool.hasWaitingClients()) {
+                        closeGracefully(socket, in);
+                        break;
+                    }
+                    continue;
+                }
+                idleSince = System.nanoTime();
+                if (read > 0) {
+                    ServerMetrics.BYTES_IN.add(read);
+                    inFlight = admission.updateInFlight(inFlight, framer.bufferedBytes());
+                } else if (read < 0) {
+                    if (framer.hasPartialFrame() || messagesHandled == 0) {
+                        LOGGER.warning("Incomplete or empty message received");
+                        out.write(MessageDispatcher.encodeReply(NetworkConstants.ERROR_MESSAGE, framer));
+                        out.flush();
+                    }
+                    // Otherwise the client closed the session between messages
+                    break;
+                }
             }
             
+        } catch (FrameTooLargeException e) {
+            ServerMetrics.OVERSIZED_MESSAGES.increment();
+            LOGGER.warning("Closing client " + clientSocket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } catch (SocketTimeoutException e) {
+            LOGGER.fine("Closing idle client session");
         } catch (IOException e) {
+            ServerMetrics.READ_ERRORS.increment();
             LOGGER.log(Level.WARNING, "Error handling client", e);
+        } finally {
+            ServerMetrics.CONNECTIONS_ACTIVE.decrementAndGet();
+            admission.release(inFlight);
         }
     }
     
     /**
-     * Process received XML message
-     * @param xmlData The XML data to process
+     * Send FIN and discard whatever the client still sends before it closes
+     * its side, so the close does not reset the connection under the client.
      */
-    private void processXmlMessage(String xmlData) {
+    private static void closeGracefully(Socket socket, InputStream in) throws IOException {
+        socket.shutdownOutput();
+        socket.setSoTimeout(IDLE_POLL_MILLIS);
+        byte[] discard = new byte[READ_BUFFER_SIZE];
         try {
-            XmlProcessor xmlProcessor = new XmlProcessor(xmlData);
-            xmlProcessor.process();
-            guiServer.updateDisplay(xmlProcessor.getCommand(), xmlProcessor.getKeyValuePairs());
-            
-            LOGGER.info("XML message processed successfully");
-            
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error processing XML message", e);
-            guiServer.clearGridDisplay();
+            while (in.read(discard) >= 0) {
+                // Sent after our last check; the client sees EOF instead of a reply
+            }
+        } catch (SocketTimeoutException e) {
+            LOGGER.fine("Client did not close after yield, closing anyway");
         }
     }
     
+    /**
+     * Next complete frame from the buffer. An oversized message is answered
+     * with an error reply and the exception rethrown, so the session ends
+     * without reading the rest of it.
+     */
+    private static boolean nextFrame(MessageFramer framer, OutputStream out) throws IOException {
+        try {
+            return framer.nextFrame();
+        } catch (FrameTooLargeException e) {
+            out.write(MessageDispatcher.encodeReply(NetworkConstants.ERROR_MESSAGE, framer));
+            out.flush();
+            throw e;
+        }
+    }
+    
+    @Override
+    public MessageJournal getJournal() {
+        return dispatcher.getJournal();
+    }
+
+    @Override
+    public KeyValueStore getStateStore() {
+        return dispatcher.getStateStore();
+    }
+
     /**
      * Close the socket listener
      * @throws IOException if there's an error closing resources
      */
+    @Override
     public void close() throws IOException {
         isRunning = false;
         
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            serverSocket.close();
+        List<ServerSocket> sockets = serverSockets;
+        if (sockets != null) {
+            ListenSockets.closeAll(sockets);
             LOGGER.info("Server socket closed");
         }
     }
@@ -0,0 +1,46 @@
+package com.konami.gaming.xml;
+
+import com.konami.gaming.common.NetworkConstants;
+
+import java.util.List;
+
+/**
+ * Builds the XML message format read by {@link XmlProcessor}. Has no UI
+ * dependency so headless senders can use it directly.
+ */
+public final class XmlMessageBuilder {
+
+    private XmlMessageBuilder() {}
+
+    /**
+     * @param command The command text
+     * @param keyValuePairs Ordered {key, value} pairs
+     * @param messageId Optional correlation ID; null or empty to omit
+     */
+    public static String build(String command, List<String[]> keyValuePairs, String messageId) {
+        StringBuilder sb = new StringBuilder(128 + keyValuePairs.size() * 96);
+        sb.append("<?xml version='1.0' encoding='UTF-8'?>\n");
+        sb.append("<Message");
+        if (messageId != null && !messageId.isEmpty()) {
+            sb.append(' ').append(NetworkConstants.MESSAGE_ID_ATTRIBUTE)
+              .append("=\"").append(escapeXml(messageId)).append('"');
+        }
+        sb.append(">\n");
+        sb.append("  <Command>").append(escapeXml(command)).append("</Command>\n");
+        sb.append("  <Data>\n");
+        for (String[] pair : keyValuePairs) {
+            sb.append("     <Row>\n");
+            sb.append("       <Description>\"").append(escapeXml(pair[0])).append("\"</Description>\n");
+            sb.append("       <Value>\"").append(escapeXml(pair[1])).append("\"</Value>\n");
+            sb.append("     </Row>\n");
+        }
+        sb.append("  </Data>\n");
+        sb.append("</Message>");
+        return sb.toString();
+    }
+
+    public static String escapeXml(String s) {
+        if (s == null) return "";
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,107 @@
+package com.konami.gaming.xml;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Shared, pre-configured XML parser factories. Factory lookup and feature
+ * setup happen once per JVM; each thread gets its own DocumentBuilder, which
+ * is reset() before every use, so concurrent client handlers never share
+ * parser state.
+ */
+public final class XmlParserContext {
+
+    private static final DocumentBuilderFactory DOM_FACTORY = newDomFactory();
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    private static final XMLInputFactory STAX_FACTORY = newStaxFactory();
+
+    private static final ThreadLocal<DocumentBuilder> DOM_BUILDER = ThreadLocal.withInitial(() -> {
+        // DocumentBuilderFactory is not specified as thread-safe, so serialize creation
+        synchronized (DOM_FACTORY) {
+            try {
+                return DOM_FACTORY.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new IllegalStateException("Secure DOM parser configuration not supported", e);
+            }
+        }
+    });
+
+    /** Fail on errors without the default handler's stderr printing; callers log the exception. */
+    private static final ErrorHandler QUIET_ERROR_HANDLER = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+    };
+
+    private XmlParserContext() {}
+
+    /**
+     * The calling thread's DocumentBuilder, reset to its initial configuration.
+     */
+    public static DocumentBuilder documentBuilder() {
+        DocumentBuilder builder = DOM_BUILDER.get();
+        builder.reset();
+        builder.setErrorHandler(QUIET_ERROR_HANDLER);
+        return builder;
+    }
+
+    /**
+     * New streaming reader from the shared factory; XMLInputFactory is safe to
+     * share once configured.
+     */
+    public static XMLStreamReader createStreamReader(Reader input) throws XMLStreamException {
+        return STAX_FACTORY.createXMLStreamReader(input);
+    }
+
+    /**
+     * New streaming reader over raw bytes in the given encoding.
+     */
+    public static XMLStreamReader createStreamReader(InputStream input, String encoding) throws XMLStreamException {
+        return STAX_FACTORY.createXMLStreamReader(input, encoding);
+    }
+
+    private static DocumentBuilderFactory newDomFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        try {
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Secure DOM parser configuration not supported", e);
+        }
+        return factory;
+    }
+
+    private static XMLInputFactory newStaxFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // XmlProcessor needs CDATA sections apart from text, as in DOM: no coalescing,
+        // and the JDK parser must be told to report CDATA events at all
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, true);
+        }
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+}
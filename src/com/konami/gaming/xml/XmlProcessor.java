@@ -1,5 +1,8 @@
 package com.konami.gaming.xml;
 
+import com.konami.gaming.common.MessageProcessor;
+import com.konami.gaming.common.NetworkConstants;
+
 import org.xml.sax.InputSource;
 import org.w3c.dom.CharacterData;
 import org.w3c.dom.Document;
@@ -8,7 +11,10 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,48 +23,216 @@ import java.util.logging.Level;
 
 /**
  * Parses XML messages and extracts command + generic key-value pairs.
+ * The default StAX path reads the message in a single streaming pass; the
+ * DOM path is kept for comparison and can be selected with -Dkonami.xml.parser=dom.
  */
-public class XmlProcessor {
+public class XmlProcessor implements MessageProcessor {
 
     private static final Logger LOGGER = Logger.getLogger(XmlProcessor.class.getName());
 
+    /** Available parser implementations. Both produce identical results. */
+    public enum Parser { DOM, STAX }
+
+    public static final String PROP_PARSER = "konami.xml.parser";
+    private static final Parser DEFAULT_PARSER =
+            Parser.valueOf(System.getProperty(PROP_PARSER, Parser.STAX.name()).trim().toUpperCase());
+
     private final String xmlData;
+    private final byte[] xmlBytes;
+    private final int xmlOffset;
+    private final int xmlLength;
+    private final Parser parser;
     private String command = "";
+    private String messageId = "";
     private final List<String[]> keyValuePairs = new ArrayList<>();
 
     public XmlProcessor(String xmlData) {
+        this(xmlData, DEFAULT_PARSER);
+    }
+
+    public XmlProcessor(String xmlData, Parser parser) {
         this.xmlData = xmlData;
+        this.xmlBytes = null;
+        this.xmlOffset = 0;
+        this.xmlLength = 0;
+        this.parser = parser;
+    }
+
+    /**
+     * Parse UTF-8 bytes in place, e.g. a frame from {@code MessageFramer};
+     * the array range must not change until {@link #process()} returns.
+     */
+    public XmlProcessor(byte[] data, int offset, int length) {
+        this(data, offset, length, DEFAULT_PARSER);
+    }
+
+    public XmlProcessor(byte[] data, int offset, int length, Parser parser) {
+        this.xmlData = null;
+        this.xmlBytes = data;
+        this.xmlOffset = offset;
+        this.xmlLength = length;
+        this.parser = parser;
     }
 
+    @Override
     public void process() {
-        if (xmlData == null || xmlData.trim().isEmpty()) {
+        if (isBlank()) {
             LOGGER.warning("Empty or null XML data provided");
             return;
         }
 
+        if (parser == Parser.STAX) {
+            processStreaming();
+        } else {
+            processDom();
+        }
+    }
+
+    private void processDom() {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            DocumentBuilder builder = XmlParserContext.documentBuilder();
+
+            Document document = builder.parse(inputSource());
+            document.getDocumentElement().normalize();
+
+            extractCommand(document);
+            extractDataRows(document);
+
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("XML processed: command=" + command + ", pairs=" + keyValuePairs.size());
+            }
 
-            DocumentBuilder builder = factory.newDocumentBuilder();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error processing XML", e);
+            command = "Error";
+        }
+    }
+
+    /**
+     * Single-pass StAX parse with the DOM path's semantics: the ID and first
+     * Command of the first Message, and for every Row (nested ones included,
+     * in document order) its first Description and Value descendants. Element
+     * text is taken as {@link #getTextContent(Element)} does, see {@link ElementText}.
+     * DOCTYPE declarations are rejected and external entities are never resolved.
+     */
+    private void processStreaming() {
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlData != null
+                    ? XmlParserContext.createStreamReader(new StringReader(xmlData))
+                    : XmlParserContext.createStreamReader(
+                          new ByteArrayInputStream(xmlBytes, xmlOffset, xmlLength), NetworkConstants.ENCODING);
+            int messageDepth = -1;   // depth of the first Message element, -1 until seen
+            boolean messageDone = false;
+            ElementText commandText = null;
+            List<RowText> rows = new ArrayList<>();       // every Row, in start-tag order
+            List<RowText> openRows = new ArrayList<>();   // Rows enclosing the current position
+            List<ElementText> openTexts = new ArrayList<>();
+            int depth = 0;
 
-            try (StringReader stringReader = new StringReader(xmlData)) {
-                InputSource inputSource = new InputSource(stringReader);
-                Document document = builder.parse(inputSource);
-                document.getDocumentElement().normalize();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.DTD) {
+                    throw new XMLStreamException("DOCTYPE is not allowed");
+                }
+                for (int i = 0; i < openTexts.size(); i++) {
+                    openTexts.get(i).onEvent(event, reader, depth);
+                }
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    for (int i = openTexts.size() - 1; i >= 0; i--) {
+                        if (openTexts.get(i).depth == depth) openTexts.remove(i);
+                    }
+                    if (!openRows.isEmpty() && openRows.get(openRows.size() - 1).depth == depth) {
+                        openRows.remove(openRows.size() - 1);
+                    }
+                    if (depth == messageDepth) {
+                        messageDone = true;
+                    }
+                    depth--;
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
 
-                extractCommand(document);
-                extractDataRows(document);
+                depth++;
+                String name = reader.getLocalName();
+                if ("Message".equals(name) && messageDepth < 0) {
+                    messageDepth = depth;
+                    String id = reader.getAttributeValue(null, NetworkConstants.MESSAGE_ID_ATTRIBUTE);
+                    messageId = id == null ? "" : id.trim();
+                } else if ("Command".equals(name) && messageDepth > 0 && !messageDone && commandText == null) {
+                    commandText = new ElementText(depth);
+                    openTexts.add(commandText);
+                } else if ("Row".equals(name)) {
+                    RowText row = new RowText(depth);
+                    rows.add(row);
+                    openRows.add(row);
+                } else if ("Description".equals(name) || "Value".equals(name)) {
+                    // The first such element inside a Row is its Description/Value, for every enclosing Row lacking one
+                    boolean isDescription = "Description".equals(name);
+                    ElementText text = null;
+                    for (RowText row : openRows) {
+                        if ((isDescription ? row.description : row.value) != null) continue;
+                        if (text == null) {
+                            text = new ElementText(depth);
+                            openTexts.add(text);
+                        }
+                        if (isDescription) row.description = text; else row.value = text;
+                    }
+                }
+            }
 
-                LOGGER.info("XML processed: command=" + command + ", pairs=" + keyValuePairs.size());
+            if (commandText != null) {
+                command = cleanText(commandText.text());
+            }
+            for (RowText row : rows) {
+                if (row.description != null && row.value != null) {
+                    keyValuePairs.add(new String[]{cleanText(row.description.text()), cleanText(row.value.text())});
+                }
+            }
+
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("XML processed: command=" + command + ", pairs=" + keyValuePairs.size());
             }
 
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error processing XML", e);
             command = "Error";
+            messageId = "";
+            keyValuePairs.clear();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    LOGGER.log(Level.FINE, "Error closing XML reader", e);
+                }
+            }
+        }
+    }
+
+    private InputSource inputSource() {
+        if (xmlData != null) {
+            return new InputSource(new StringReader(xmlData));
+        }
+        InputSource inputSource = new InputSource(new ByteArrayInputStream(xmlBytes, xmlOffset, xmlLength));
+        // The wire protocol is UTF-8 whatever the prolog says, as when lines were decoded to Strings
+        inputSource.setEncoding(NetworkConstants.ENCODING);
+        return inputSource;
+    }
+
+    private boolean isBlank() {
+        if (xmlData != null) {
+            return xmlData.trim().isEmpty();
+        }
+        if (xmlBytes == null) {
+            return true;
         }
+        for (int i = xmlOffset; i < xmlOffset + xmlLength; i++) {
+            if ((xmlBytes[i] & 0xFF) > ' ') return false;
+        }
+        return true;
     }
 
     private void extractCommand(Document document) {
@@ -66,6 +240,7 @@ public class XmlProcessor {
             NodeList messageNodes = document.getElementsByTagName("Message");
             if (messageNodes.getLength() > 0) {
                 Element messageElement = (Element) messageNodes.item(0);
+                messageId = messageElement.getAttribute(NetworkConstants.MESSAGE_ID_ATTRIBUTE).trim();
                 NodeList commandNodes = messageElement.getElementsByTagName("Command");
                 if (commandNodes.getLength() > 0) {
                     command = getTextContent((Element) commandNodes.item(0));
@@ -104,16 +279,111 @@ public class XmlProcessor {
         return element.getTextContent();
     }
 
-    private String cleanText(String text) {
+    private static String cleanText(String text) {
         if (text == null) return "";
-        return text.trim().replaceAll("^\"|\"$", "");
+        // Same as replaceAll("^\"|\"$", "") on the trimmed text, without the regex
+        String trimmed = text.trim();
+        int start = trimmed.startsWith("\"") ? 1 : 0;
+        int end = trimmed.length() > start && trimmed.endsWith("\"") ? trimmed.length() - 1 : trimmed.length();
+        return trimmed.substring(start, end);
     }
 
+    @Override
     public String getCommand() {
         return command;
     }
 
+    @Override
     public List<String[]> getKeyValuePairs() {
         return keyValuePairs;
     }
+
+    /**
+     * Optional correlation ID from {@code <Message id="...">}, or "" when absent.
+     */
+    @Override
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /** A Row element and the elements chosen as its Description and Value. */
+    private static final class RowText {
+        private final int depth;
+        private ElementText description;
+        private ElementText value;
+
+        RowText(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Text of one element, collected from stream events the way the DOM path
+     * reads it: if the first child is text, CDATA or a comment, that node's data
+     * (a text node being the run of adjacent character events); otherwise the
+     * text of all descendants, without comments.
+     */
+    private static final class ElementText {
+        private static final int PENDING = 0;     // no child seen yet
+        private static final int FIRST_TEXT = 1;  // inside the leading text node
+        private static final int ALL_TEXT = 2;    // first child was an element or PI
+        private static final int DONE = 3;
+
+        private final int depth;
+        private String single = "";     // the usual case: one chunk of text
+        private StringBuilder text;     // only once a second chunk arrives
+        private int state = PENDING;
+
+        ElementText(int depth) {
+            this.depth = depth;
+        }
+
+        /** Called for every event after the element's start tag; {@code depth} is before the event. */
+        void onEvent(int event, XMLStreamReader reader, int depth) {
+            if (state == DONE) {
+                return;
+            }
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    if (state == PENDING) state = FIRST_TEXT;
+                    append(reader);
+                    break;
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.COMMENT:
+                    if (state == PENDING) {
+                        append(reader);
+                        state = DONE;
+                    } else if (state == FIRST_TEXT) {
+                        state = DONE;
+                    } else if (event == XMLStreamConstants.CDATA) {
+                        append(reader);
+                    }
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (state == PENDING) state = ALL_TEXT;
+                    else if (state == FIRST_TEXT) state = DONE;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == this.depth) state = DONE;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void append(XMLStreamReader reader) {
+            if (text == null && single.isEmpty()) {
+                single = reader.getText();
+                return;
+            }
+            if (text == null) text = new StringBuilder(single);
+            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+
+        String text() {
+            return text == null ? single : text.toString();
+        }
+    }
 }
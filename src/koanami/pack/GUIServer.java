@@ -6,6 +6,8 @@ import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 import javax.swing.*;
 
 @SuppressWarnings("serial")
@@ -21,7 +23,9 @@ public class GUIServer extends JFrame implements ActionListener, Runnable {
 	private JLabel ipFieldLabel;
 	private JLabel portFieldLabel;
 	private int serverPortNumber;
-	private JTextField[] gridFields = new JTextField[9];
+	private static final int GRID_COLUMNS = 3;
+	private static final int MIN_GRID_ROWS = 3;
+	private final List<JTextField> gridFields = new ArrayList<JTextField>();
 	public SocketLis serverCon;
 
 	public GUIServer(String titleName) {
@@ -51,14 +55,8 @@ public class GUIServer extends JFrame implements ActionListener, Runnable {
 		jpNorth.add(stopButton);
 
 		// Center panel (Grid)
-		jpCenter = new JPanel(new GridLayout(3, 3));
-		for (int i = 0; i < 9; i++) {
-			gridFields[i] = new JTextField();
-			gridFields[i].setBackground(Color.DARK_GRAY);
-			gridFields[i].setVisible(false);
-			gridFields[i].setEditable(false);
-			jpCenter.add(gridFields[i]);
-		}
+		jpCenter = new JPanel(new GridLayout(MIN_GRID_ROWS, GRID_COLUMNS));
+		setGridRows(MIN_GRID_ROWS);
 
 		// South panel
 		ipField = new JTextField(20);
@@ -103,21 +101,49 @@ public class GUIServer extends JFrame implements ActionListener, Runnable {
 		}
 	}
 
-	public void setGridLayout(String[] names, String[] addresses, String xmlCommand) {
-		for (JTextField field : gridFields) {
-			field.setVisible(true);
+	/**
+	 * Shows the message one grid row per message row: its description, its
+	 * value, and the command. The grid is sized to the message's rows.
+	 */
+	public void setGridLayout(XmlReceived received) {
+		int rows = Math.max(MIN_GRID_ROWS, received.getRowCount());
+		setGridRows(rows);
+		for (int row = 0; row < rows; row++) {
+			int base = row * GRID_COLUMNS;
+			boolean hasRow = row < received.getRowCount();
+			gridFields.get(base).setText(hasRow ? received.getDescription(row) : "");
+			gridFields.get(base + 1).setText(hasRow ? received.getValue(row) : "");
+			if (row == 0) {
+				gridFields.get(base + 2).setText(received.getXmlCommand());
+			} else {
+				gridFields.get(base + 2).setText("Command option");
+			}
+		}
+		for (int i = 0; i < rows * GRID_COLUMNS; i++) {
+			gridFields.get(i).setVisible(true);
+			gridFields.get(i).setEditable(false);
+		}
+	}
+
+	// GridLayout leaves room for hidden fields too, so the panel holds exactly the rows shown;
+	// fields beyond them are kept for the next large message
+	private void setGridRows(int rows) {
+		int cells = rows * GRID_COLUMNS;
+		while (gridFields.size() < cells) {
+			JTextField field = new JTextField();
+			field.setBackground(Color.DARK_GRAY);
+			field.setVisible(false);
 			field.setEditable(false);
+			gridFields.add(field);
+		}
+		if (jpCenter.getComponentCount() == cells) return;
+		jpCenter.removeAll();
+		for (int i = 0; i < cells; i++) {
+			jpCenter.add(gridFields.get(i));
 		}
-		// Example mapping, adjust as needed
-		gridFields[0].setText(names.length > 0 ? names[0] : "");
-		gridFields[1].setText(addresses.length > 1 ? addresses[1] : "");
-		gridFields[2].setText(xmlCommand != null ? xmlCommand : "");
-		gridFields[3].setText(names.length > 2 ? names[2] : "");
-		gridFields[4].setText(addresses.length > 3 ? addresses[3] : "");
-		gridFields[5].setText("Command option");
-		gridFields[6].setText(names.length > 4 ? names[4] : "");
-		gridFields[7].setText(addresses.length > 5 ? addresses[5] : "");
-		gridFields[8].setText("Command option");
+		jpCenter.setLayout(new GridLayout(rows, GRID_COLUMNS));
+		jpCenter.revalidate();
+		jpCenter.repaint();
 	}
 
 	@Override
@@ -2,95 +2,178 @@ package koanami.pack;
 
 import java.net.*;
 import java.io.*;
-
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingUtilities;
+
+/**
+ * Legacy socket server. The accept loop only accepts: each client session
+ * runs on its own thread with its own socket, reader and writer, and the
+ * received XML is parsed by a separate pool of worker threads. A slow client
+ * therefore never holds up another one.
+ *
+ * Protocol (unchanged): the client sends lines until a line "END"; the server
+ * answers with the confirmation line and "END", then closes the connection.
+ */
 public class SocketLis implements Runnable {
 
+	private static final String CONFIRMATION = "Confirmed: Message has been received, come again!";
+	private static final String END = "END";
+	private static final int CLIENT_TIMEOUT = 30000; // drop clients that stall mid-message
+	private static final int XML_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
 	private volatile boolean running = true;
-	private String readIn = "";
-	private String XML = "";
-	private Socket sock;
-	private ServerSocket serverConnect;
-	private PrintWriter printS;
-	private GUIServer gs;
-	private BufferedReader inside;
+	private volatile ServerSocket serverConnect;
+	private final GUIServer gs;
+	private final Set<Socket> openSockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+	private final ExecutorService sessions = Executors.newCachedThreadPool(new NamedThreadFactory("Legacy-Client-Session"));
+	private final ExecutorService xmlWorkers = Executors.newFixedThreadPool(XML_WORKERS, new NamedThreadFactory("Legacy-Xml-Worker"));
+	private final AtomicLong arrivals = new AtomicLong();
+	private long displayed; // arrival number of the message on the grid; Swing event thread only
 
 	public SocketLis(GUIServer gs) {
 		this.gs = gs;
 	}
 
-	// Close resources safely
-	public void close() {
+	// Close resources safely: stop accepting, drop open sessions, stop the workers
+	public void close() throws IOException {
 		running = false;
 		try {
-			if (sock != null && !sock.isClosed()) sock.close();
 			if (serverConnect != null && !serverConnect.isClosed()) serverConnect.close();
-			if (printS != null) printS.close();
-			if (inside != null) inside.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+		} finally {
+			for (Socket socket : openSockets) {
+				closeQuietly(socket);
+			}
+			sessions.shutdownNow();
+			xmlWorkers.shutdown();
 		}
 	}
 
-	public String getReadIn() {
-		return readIn;
-	}
-
-	public void setReadIn(String readIn) {
-		this.readIn = readIn;
-	}
-
-	public String getXML() {
-		return XML;
-	}
-
-	public void setXML(String XML) {
-		this.XML = XML;
-	}
-
 	@Override
 	public void run() {
 		try {
 			serverConnect = new ServerSocket(gs.getServerPortNumber());
 			while (running) {
-				try (Socket clientSocket = serverConnect.accept();
-					 BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-					 PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)) {
-
-					this.sock = clientSocket;
-					this.inside = in;
-					this.printS = out;
-					StringBuilder xmlBuilder = new StringBuilder();
-
-					while (running && (readIn = in.readLine()) != null) {
-						if ("END".equals(readIn)) {
-							gs.clear();
-							out.println("Confirmed: Message has been received, come again!");
-							out.println("END");
-							break;
-						} else {
-							xmlBuilder.append(readIn);
-						}
+				try {
+					final Socket clientSocket = serverConnect.accept();
+					openSockets.add(clientSocket);
+					try {
+						sessions.execute(new Runnable() {
+							@Override
+							public void run() {
+								handleClient(clientSocket);
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						// Server is shutting down
+						openSockets.remove(clientSocket);
+						closeQuietly(clientSocket);
 					}
-
-					XML = xmlBuilder.toString();
-
-					// Process the XML
-					XmlReceived xml = new XmlReceived(XML, gs);
-					xml.process();
-					gs.setmyLayout(xml.getMyStrings(), xml.getMyAdd(), xml.getxmlCommand());
-
-					// Reset variables
-					readIn = "";
-					XML = "";
-
 				} catch (IOException e) {
-					e.printStackTrace();
+					if (running) e.printStackTrace();
 				}
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		} finally {
-			close();
+			try {
+				close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * One client session. Everything it touches is local to this call.
+	 */
+	private void handleClient(Socket clientSocket) {
+		String xml = null;
+		try (Socket socket = clientSocket;
+			 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			 PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+
+			socket.setSoTimeout(CLIENT_TIMEOUT);
+			StringBuilder xmlBuilder = new StringBuilder();
+			String line;
+			while (running && (line = in.readLine()) != null) {
+				if (END.equals(line)) {
+					out.println(CONFIRMATION);
+					out.println(END);
+					break;
+				}
+				xmlBuilder.append(line);
+			}
+			xml = xmlBuilder.toString();
+		} catch (IOException e) {
+			if (running) e.printStackTrace();
+		} finally {
+			openSockets.remove(clientSocket);
+		}
+
+		// As before, whatever was received is processed, even without an END line
+		if (xml != null && running) {
+			submitXml(xml);
+		}
+	}
+
+	/**
+	 * Parse on a worker thread, then show the result on the Swing event thread.
+	 * Workers can finish out of order, so a message parsed after a newer one
+	 * has been shown is dropped and the grid keeps the last message received.
+	 */
+	private void submitXml(final String xml) {
+		final long arrival = arrivals.incrementAndGet();
+		try {
+			xmlWorkers.execute(new Runnable() {
+				@Override
+				public void run() {
+					final XmlReceived message = new XmlReceived(xml, gs);
+					message.process();
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							if (arrival < displayed) return;
+							displayed = arrival;
+							gs.clearGrid();
+							gs.setGridLayout(message);
+						}
+					});
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Server is shutting down
+		}
+	}
+
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// already closed
+		}
+	}
+
+	private static final class NamedThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger(1);
+
+		NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, prefix + "-" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
 		}
 	}
 }
@@ -1,77 +1,87 @@
 package koanami.pack;
 
-import javax.xml.parsers.*;
-import org.xml.sax.InputSource;
-import org.w3c.dom.*;
-import java.io.*;
+import com.konami.gaming.xml.XmlProcessor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Legacy view of a received message. Parsing is delegated to the server's
+ * {@link XmlProcessor}, so legacy and modern clients share one parser. The
+ * message is parsed once and every Row is kept, however many there are.
+ */
 public class XmlReceived {
 
+	private static final String NAME = "Name";
+	private static final String ADDRESS = "Address";
+
 	private String xmlCommand = "Null";
 	private final String xml;
 	private final GUIServer gui;
-	private final String[] myStrings = new String[6];
-	private final String[] myAdd = new String[6];
+	private List<String[]> rows = Collections.emptyList(); // {description, value} per Row, in order
+	private boolean processed;
 
 	public XmlReceived(String xml, GUIServer gui) {
 		this.xml = xml;
 		this.gui = gui;
 	}
 
-	// Converts the input element type to a string type
-	private static String getCharacterDataFromElement(Element e) {
-		Node child = e.getFirstChild();
-		return (child instanceof CharacterData) ? ((CharacterData) child).getData() : "";
-	}
-
-	// Main method to process XML data
+	// Main method to process XML data; later calls reuse the first result
 	public void process() {
-		try {
-			DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-			Document doc = db.parse(new InputSource(new StringReader(xml)));
-
-			NodeList nodesMessage = doc.getElementsByTagName("Message");
-			if (nodesMessage.getLength() == 0) return;
-			Element elementMessage = (Element) nodesMessage.item(0);
+		if (processed) return;
+		processed = true;
 
-			NodeList myCommands = elementMessage.getElementsByTagName("Command");
-			if (myCommands.getLength() == 0) return;
-			String clientCommand = getCharacterDataFromElement((Element) myCommands.item(0));
+		XmlProcessor processor = new XmlProcessor(xml);
+		processor.process();
 
-			System.out.println("Server please process this command " + clientCommand);
-			this.xmlCommand = clientCommand;
+		// As before: unparsable XML, or no Message with a Command, leaves "Null" and no rows
+		String clientCommand = processor.getCommand();
+		if ("Error".equals(clientCommand) || clientCommand.isEmpty()) return;
 
-			NodeList nodes = doc.getElementsByTagName("Row");
-			for (int x = 0; x < nodes.getLength() && x < 6; x++) {
-				Element element = (Element) nodes.item(x);
+		System.out.println("Server please process this command " + clientCommand);
+		this.xmlCommand = clientCommand;
+		rows = new ArrayList<String[]>(processor.getKeyValuePairs());
+	}
 
-				NodeList nameList = element.getElementsByTagName("Description");
-				NodeList addrList = element.getElementsByTagName("Value");
-				if (nameList.getLength() == 0 || addrList.getLength() == 0) continue;
+	public String getXmlCommand() {
+		return xmlCommand;
+	}
 
-				String conVar = getCharacterDataFromElement((Element) nameList.item(0)).replace("\"", "");
-				String value = getCharacterDataFromElement((Element) addrList.item(0)).replace("\"", "");
+	public int getRowCount() {
+		return rows.size();
+	}
 
-				if ("Address".equals(conVar)) {
-					myAdd[x] = value;
-				} else if ("Name".equals(conVar)) {
-					myStrings[x] = value;
-				}
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+	public String getDescription(int row) {
+		return rows.get(row)[0];
 	}
 
-	public String getXmlCommand() {
-		return xmlCommand;
+	public String getValue(int row) {
+		return rows.get(row)[1];
 	}
 
+	/**
+	 * Values of the "Name" rows, indexed by row position (null for other rows).
+	 */
 	public String[] getMyStrings() {
-		return myStrings;
+		return valuesFor(NAME);
 	}
 
+	/**
+	 * Values of the "Address" rows, indexed by row position (null for other rows).
+	 */
 	public String[] getMyAdd() {
-		return myAdd;
+		return valuesFor(ADDRESS);
+	}
+
+	private String[] valuesFor(String description) {
+		String[] values = new String[rows.size()];
+		for (int i = 0; i < values.length; i++) {
+			String[] row = rows.get(i);
+			if (description.equals(row[0])) {
+				values[i] = row[1];
+			}
+		}
+		return values;
 	}
 }
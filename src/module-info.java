@@ -2,10 +2,15 @@ module com.konami.gaming {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.logging;
+    requires java.management;
     requires java.xml;
+    requires jdk.httpserver;
 
     exports com.konami.gaming.common;
     exports com.konami.gaming.client;
+    exports com.konami.gaming.journal;
+    exports com.konami.gaming.logging;
+    exports com.konami.gaming.metrics;
     exports com.konami.gaming.server;
     exports com.konami.gaming.xml;
 }